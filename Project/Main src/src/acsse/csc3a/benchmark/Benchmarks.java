@@ -0,0 +1,92 @@
+package acsse.csc3a.benchmark;
+
+/**
+ * The timing and heap measurements shared by the benchmarks. A workload is run
+ * for a few warm up rounds so the JIT has compiled it, then timed over the
+ * measured rounds. The checksums of the workloads are written to a volatile
+ * field so their work cannot be optimised away
+ */
+public class Benchmarks {
+
+	/**
+	 * the rounds run before a workload is timed
+	 */
+	public static final int WARMUP_ROUNDS = 3;
+
+	/**
+	 * the rounds a workload is timed over
+	 */
+	public static final int MEASURED_ROUNDS = 5;
+
+	/**
+	 * receives the checksums of the workloads
+	 */
+	private static volatile double sink;
+
+	/**
+	 * The operations timed by a benchmark
+	 */
+	public interface Workload {
+		/**
+		 * Runs one round of the workload
+		 *
+		 * @return a checksum of the values that were read, so nothing is optimised
+		 *         away
+		 */
+		double run();
+	}
+
+	private Benchmarks() {
+	}
+
+	/**
+	 * Times a workload over the default rounds
+	 *
+	 * @param workload the workload being timed
+	 * @return the average time of a round in milliseconds
+	 */
+	public static double time(Workload workload) {
+		return time(WARMUP_ROUNDS, MEASURED_ROUNDS, workload);
+	}
+
+	/**
+	 * Times a workload
+	 *
+	 * @param warmupRounds   the rounds run before the workload is timed
+	 * @param measuredRounds the rounds the workload is timed over
+	 * @param workload       the workload being timed
+	 * @return the average time of a round in milliseconds
+	 * @throws IllegalArgumentException when warmupRounds is negative or
+	 *                                  measuredRounds is not positive
+	 */
+	public static double time(int warmupRounds, int measuredRounds, Workload workload)
+			throws IllegalArgumentException {
+		if (warmupRounds < 0 || measuredRounds <= 0)
+			throw new IllegalArgumentException("Illegal rounds: " + warmupRounds + ", " + measuredRounds);
+		double checksum = 0;
+		for (int i = 0; i < warmupRounds; i++) {
+			checksum += workload.run();
+		}
+		long start = System.nanoTime();
+		for (int i = 0; i < measuredRounds; i++) {
+			checksum += workload.run();
+		}
+		long elapsed = System.nanoTime() - start;
+		sink = checksum;
+		return elapsed / 1e6 / measuredRounds;
+	}
+
+	/**
+	 * Measures the heap in use after a few collections
+	 *
+	 * @return the used heap in bytes
+	 */
+	public static long usedHeap() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+}
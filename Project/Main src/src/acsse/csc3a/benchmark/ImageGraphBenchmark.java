@@ -0,0 +1,325 @@
+package acsse.csc3a.benchmark;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import acsse.csc3a.graph.AbstractCSRGraph;
+import acsse.csc3a.graph.AdjacencyMapGraph;
+import acsse.csc3a.graph.Edge;
+import acsse.csc3a.graph.Graph;
+import acsse.csc3a.graph.IndexedGraph;
+import acsse.csc3a.graph.OffHeapCSRGraph;
+import acsse.csc3a.graph.Vertex;
+import acsse.csc3a.imagegraph.ImageGraph;
+import acsse.csc3a.imagegraph.ImageRaster;
+import acsse.csc3a.imagegraph.IntegralImage;
+import acsse.csc3a.imagegraph.Point;
+
+/**
+ * A simple timing harness for the pixel access used while building image
+ * graphs. It compares the original per pixel {@link BufferedImage#getRGB(int, int)}
+ * and {@link Color} averaging against {@link ImageRaster} on synthetic images
+ * of the sizes we receive (12 to 20 mega pixels), and rescanning the raster
+ * for every region size against a single {@link IntegralImage}. It also
+ * compares the heap held by the same image graph stored as a
+ * {@link acsse.csc3a.graph.CSRGraph}, as an {@link OffHeapCSRGraph} and as an
+ * {@link AdjacencyMapGraph}, times the graph build with a single band against
+ * one band per processor, and times opening a graph saved with
+ * {@link ImageGraph#save(Path)} against deserializing it
+ */
+public class ImageGraphBenchmark {
+
+	/**
+	 * Creates an image filled with random noise so no layout can take a shortcut
+	 *
+	 * @param width  width of the image
+	 * @param height height of the image
+	 * @param type   the BufferedImage type
+	 * @return the generated image
+	 */
+	private static BufferedImage createImage(int width, int height, int type) {
+		BufferedImage image = new BufferedImage(width, height, type);
+		Random random = new Random(42);
+		int[] row = new int[width];
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				row[x] = random.nextInt();
+			}
+			image.setRGB(0, y, width, 1, row, 0, width);
+		}
+		return image;
+	}
+
+	/**
+	 * The region size ImageGraph would use for an image of this size
+	 *
+	 * @param image the image being queried
+	 * @return the region size
+	 */
+	private static int regionSize(BufferedImage image) {
+		return ImageGraph.defaultRegionSize(image.getWidth(), image.getHeight());
+	}
+
+	/**
+	 * Averages every region the way ImageGraph originally did, one getRGB call and
+	 * one Color per pixel
+	 *
+	 * @param image      the image being averaged
+	 * @param regionSize the size of a region
+	 * @return a checksum of the averages so the work is not optimised away
+	 */
+	private static long legacyAverages(BufferedImage image, int regionSize) {
+		long checksum = 0;
+		for (int startY = 0; startY < image.getHeight(); startY += regionSize) {
+			for (int startX = 0; startX < image.getWidth(); startX += regionSize) {
+				int sumRed = 0, sumGreen = 0, sumBlue = 0, count = 0;
+				final int endY = Math.min(startY + regionSize, image.getHeight());
+				final int endX = Math.min(startX + regionSize, image.getWidth());
+				for (int y = startY; y < endY; y++) {
+					for (int x = startX; x < endX; x++) {
+						Color currentColor = new Color(image.getRGB(x, y));
+						sumRed += currentColor.getRed();
+						sumGreen += currentColor.getGreen();
+						sumBlue += currentColor.getBlue();
+						count++;
+					}
+				}
+				checksum += new Color(sumRed / count, sumGreen / count, sumBlue / count).getRGB();
+			}
+		}
+		return checksum;
+	}
+
+	/**
+	 * Averages every region through the raster reader
+	 *
+	 * @param image      the image being averaged
+	 * @param regionSize the size of a region
+	 * @return a checksum of the averages so the work is not optimised away
+	 */
+	private static long rasterAverages(BufferedImage image, int regionSize) {
+		long checksum = 0;
+		long[] sums = new long[4];
+		ImageRaster raster = ImageRaster.of(image);
+		for (int startY = 0; startY < image.getHeight(); startY += regionSize) {
+			for (int startX = 0; startX < image.getWidth(); startX += regionSize) {
+				checksum += raster.averageARGB(startX, startY, regionSize, sums) | 0xFF000000;
+			}
+		}
+		return checksum;
+	}
+
+	/**
+	 * Averages every region of the given size with constant time lookups
+	 *
+	 * @param integralImage the summed area tables of the image
+	 * @param regionSize    the size of a region
+	 * @return a checksum of the averages so the work is not optimised away
+	 */
+	private static long integralAverages(IntegralImage integralImage, int regionSize) {
+		long checksum = 0;
+		for (int startY = 0; startY < integralImage.getHeight(); startY += regionSize) {
+			for (int startX = 0; startX < integralImage.getWidth(); startX += regionSize) {
+				checksum += integralImage.averageARGB(startX, startY, regionSize) | 0xFF000000;
+			}
+		}
+		return checksum;
+	}
+
+	/**
+	 * Times a parameter sweep over several region sizes, once by rescanning the
+	 * raster for every size and once from a single integral image
+	 *
+	 * @param image       the image being averaged
+	 * @param regionSizes the region sizes of the sweep
+	 */
+	private static void sweep(BufferedImage image, int[] regionSizes) {
+		long checksum = 0;
+		long start = System.nanoTime();
+		for (int regionSize : regionSizes) {
+			checksum += rasterAverages(image, regionSize);
+		}
+		double rescan = (System.nanoTime() - start) / 1e6;
+
+		start = System.nanoTime();
+		IntegralImage integralImage = new IntegralImage(image);
+		double build = (System.nanoTime() - start) / 1e6;
+		for (int regionSize : regionSizes) {
+			checksum -= integralAverages(integralImage, regionSize);
+		}
+		double integral = (System.nanoTime() - start) / 1e6;
+
+		if (checksum != 0)
+			throw new IllegalStateException("Integral image averages differ from raster averages");
+
+		System.out.printf("%dx%d sweep of %d region sizes  rescanning: %7.1f ms  integral image: %7.1f ms (%.1f ms to build)%n",
+				image.getWidth(), image.getHeight(), regionSizes.length, rescan, integral, build);
+	}
+
+	/**
+	 * Copies a graph into an adjacency map graph, the representation image graphs
+	 * used before the CSR graph
+	 *
+	 * @param graph the graph being copied
+	 * @return the copy
+	 */
+	private static Graph<Point, Float> copyToAdjacencyMapGraph(IndexedGraph<Point, Float> graph) {
+		Graph<Point, Float> copy = new AdjacencyMapGraph<>();
+		// the copy of every vertex, at the index of the original
+		@SuppressWarnings("unchecked")
+		Vertex<Point>[] copies = (Vertex<Point>[]) new Vertex<?>[graph.numVertices()];
+		for (Vertex<Point> v : graph.vertices()) {
+			copies[graph.vertexIndex(v)] = copy.insertVertex(v.getElement());
+		}
+		for (Edge<Float> e : graph.edges()) {
+			Vertex<Point>[] ends = graph.endVertices(e);
+			copy.insertEdge(copies[graph.vertexIndex(ends[0])], copies[graph.vertexIndex(ends[1])], e.getElement());
+		}
+		return copy;
+	}
+
+	/**
+	 * Prints the heap held per vertex by a full resolution image graph, as a CSR
+	 * graph, as an off heap CSR graph and as an adjacency map graph
+	 *
+	 * @param image the image the graph is built from
+	 */
+	private static void memory(BufferedImage image) {
+		long before = Benchmarks.usedHeap();
+		ImageGraph imageGraph = new ImageGraph(image, 1);
+		AbstractCSRGraph csr = (AbstractCSRGraph) imageGraph.getGraph();
+		imageGraph = null;
+		long csrBytes = Benchmarks.usedHeap() - before;
+
+		before = Benchmarks.usedHeap();
+		OffHeapCSRGraph offHeap = OffHeapCSRGraph.copyOf(csr);
+		long offHeapBytes = Benchmarks.usedHeap() - before;
+		offHeap.close();
+
+		before = Benchmarks.usedHeap();
+		Graph<Point, Float> adjacency = copyToAdjacencyMapGraph(csr);
+		long adjacencyBytes = Benchmarks.usedHeap() - before;
+
+		int vertices = adjacency.numVertices();
+		System.out.printf("%dx%d region size 1, %d vertices, %d edges  CSRGraph: %6.1f bytes/vertex  OffHeapCSRGraph: %6.1f bytes/vertex  AdjacencyMapGraph: %7.1f bytes/vertex%n",
+				image.getWidth(), image.getHeight(), vertices, csr.numEdges(), (double) csrBytes / vertices,
+				(double) offHeapBytes / vertices, (double) adjacencyBytes / vertices);
+	}
+
+	/**
+	 * Times building a full resolution image graph with the given number of bands
+	 *
+	 * @param image     the image the graph is built from
+	 * @param bandCount the number of bands built in parallel
+	 * @return the average time of a build in milliseconds
+	 */
+	private static double timeBuild(BufferedImage image, int bandCount) {
+		ImageGraph.setBandCount(bandCount);
+		return Benchmarks.time(() -> new ImageGraph(image, 1).getGraph().numEdges());
+	}
+
+	/**
+	 * Times saving a full resolution image graph and opening it again with
+	 * {@link ImageGraph#load(Path)} against serializing and deserializing it, both
+	 * through a temporary file. Opening is timed on its own, the pages of a loaded
+	 * graph are read as it is used
+	 *
+	 * @param image the image the graph is built from
+	 * @throws IOException            when the temporary file could not be used
+	 * @throws ClassNotFoundException never, ImageGraph is on the class path
+	 */
+	private static void persistence(BufferedImage image) throws IOException, ClassNotFoundException {
+		ImageGraph imageGraph = new ImageGraph(image, 1);
+		Path file = Files.createTempFile("imagegraph", ".bin");
+		try {
+			long start = System.nanoTime();
+			imageGraph.save(file);
+			double save = (System.nanoTime() - start) / 1e6;
+			long bytes = Files.size(file);
+
+			double load = 0;
+			for (int i = 0; i < Benchmarks.WARMUP_ROUNDS + Benchmarks.MEASURED_ROUNDS; i++) {
+				start = System.nanoTime();
+				ImageGraph loaded = ImageGraph.load(file);
+				if (i >= Benchmarks.WARMUP_ROUNDS)
+					load += (System.nanoTime() - start) / 1e6;
+				loaded.close();
+			}
+
+			start = System.nanoTime();
+			try (ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+				out.writeObject(imageGraph);
+			}
+			double serialize = (System.nanoTime() - start) / 1e6;
+
+			double deserialize = 0;
+			for (int i = 0; i < Benchmarks.WARMUP_ROUNDS + Benchmarks.MEASURED_ROUNDS; i++) {
+				start = System.nanoTime();
+				ImageGraph read;
+				try (ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+					read = (ImageGraph) in.readObject();
+				}
+				if (i >= Benchmarks.WARMUP_ROUNDS)
+					deserialize += (System.nanoTime() - start) / 1e6;
+				read.close();
+			}
+
+			System.out.printf("%dx%d region size 1, %.0f MB  save: %7.1f ms  load: %7.1f ms  serialize: %7.1f ms  deserialize: %7.1f ms%n",
+					image.getWidth(), image.getHeight(), bytes / 1e6, save, load / Benchmarks.MEASURED_ROUNDS, serialize,
+					deserialize / Benchmarks.MEASURED_ROUNDS);
+		} finally {
+			Files.deleteIfExists(file);
+		}
+	}
+
+	public static void main(String[] args) throws IOException, ClassNotFoundException {
+		int[][] sizes = { { 4000, 3000 }, { 5472, 3648 } };
+		int[] types = { BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_INT_RGB,
+				BufferedImage.TYPE_BYTE_GRAY };
+		String[] names = { "TYPE_3BYTE_BGR", "TYPE_INT_ARGB", "TYPE_INT_RGB", "TYPE_BYTE_GRAY (fallback)" };
+
+		for (int[] size : sizes) {
+			for (int t = 0; t < types.length; t++) {
+				BufferedImage image = createImage(size[0], size[1], types[t]);
+				int regionSize = regionSize(image);
+
+				// both readers must agree before their speed means anything
+				if (legacyAverages(image, regionSize) != rasterAverages(image, regionSize))
+					throw new IllegalStateException("Raster averages differ from getRGB averages for " + names[t]);
+
+				double legacy = Benchmarks.time(() -> legacyAverages(image, regionSize));
+				double raster = Benchmarks.time(() -> rasterAverages(image, regionSize));
+				System.out.printf("%dx%d %-26s getRGB+Color: %8.1f ms  ImageRaster: %7.1f ms  speedup: %5.1fx%n",
+						size[0], size[1], names[t], legacy, raster, legacy / raster);
+			}
+		}
+
+		BufferedImage image = createImage(5472, 3648, BufferedImage.TYPE_3BYTE_BGR);
+		for (int i = 0; i < Benchmarks.WARMUP_ROUNDS; i++) {
+			sweep(image, new int[] { 2, 4 });
+		}
+		sweep(image, new int[] { 1, 2, 3, 4, 6, 8, 12, 16, 20, 32 });
+
+		image = null;
+		memory(createImage(1000, 1000, BufferedImage.TYPE_3BYTE_BGR));
+
+		int processors = Runtime.getRuntime().availableProcessors();
+		image = createImage(2000, 1500, BufferedImage.TYPE_3BYTE_BGR);
+		double sequential = timeBuild(image, 1);
+		double parallel = timeBuild(image, processors);
+		System.out.printf("2000x1500 region size 1 build  1 band: %7.1f ms  %d bands: %7.1f ms  speedup: %4.1fx%n",
+				sequential, processors, parallel, sequential / parallel);
+
+		image = null;
+		persistence(createImage(4000, 3000, BufferedImage.TYPE_3BYTE_BGR));
+	}
+
+}
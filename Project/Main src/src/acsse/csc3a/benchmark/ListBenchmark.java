@@ -0,0 +1,102 @@
+package acsse.csc3a.benchmark;
+
+import java.util.List;
+import java.util.Random;
+
+import acsse.csc3a.lists.ArrayList;
+
+/**
+ * A simple timing harness for the array lists. Every list is filled one
+ * element at a time with the edge weights of a small image graph and then
+ * read back, once for each growth strategy of {@link ArrayList} and once for
+ * {@link java.util.ArrayList}. Bulk appends through addAll are then compared
+ * with appending element by element
+ */
+public class ListBenchmark {
+
+	/**
+	 * the warm up and measured rounds, a round only takes a few milliseconds so
+	 * more of them are run than by the other benchmarks
+	 */
+	private static final int ROUNDS = 20;
+
+	/**
+	 * the number of elements, about the edges of a 230x230 image, kept small
+	 * enough for strategy 'A' to finish
+	 */
+	private static final int SIZE = 100_000;
+
+	/**
+	 * the number of lists appended by the bulk workloads
+	 */
+	private static final int CHUNKS = 100;
+
+	private static final float[] weights = new float[SIZE];
+
+	static {
+		Random random = new Random(1);
+		for (int i = 0; i < SIZE; i++) {
+			weights[i] = 30 + random.nextFloat() * 400;
+		}
+	}
+
+	/**
+	 * Appends every weight to a list of boxed floats and sums them back
+	 *
+	 * @param list the empty list
+	 * @return the sum of the weights
+	 */
+	private static double fillAndSum(List<Float> list) {
+		for (int i = 0; i < SIZE; i++) {
+			list.add(weights[i]);
+		}
+		double sum = 0;
+		for (int i = 0; i < list.size(); i++) {
+			sum += list.get(i);
+		}
+		return sum;
+	}
+
+	/**
+	 * Splits the weights into lists that are appended to a single list
+	 *
+	 * @param bulk true to append each list with addAll, false to append its
+	 *             elements one at a time
+	 * @return the size of the combined list
+	 */
+	private static double concatenate(boolean bulk) {
+		ArrayList<Float> combined = new ArrayList<>();
+		int chunk = SIZE / CHUNKS;
+		for (int c = 0; c < CHUNKS; c++) {
+			ArrayList<Float> part = new ArrayList<>(chunk);
+			for (int i = c * chunk; i < (c + 1) * chunk; i++) {
+				part.add(weights[i]);
+			}
+			if (bulk) {
+				combined.addAll(part);
+			} else {
+				for (Float weight : part) {
+					combined.add(weight);
+				}
+			}
+		}
+		return combined.size();
+	}
+
+	public static void main(String[] args) {
+		System.out.printf("%d elements, append one at a time and read back%n", SIZE);
+		double a = Benchmarks.time(ROUNDS, ROUNDS, () -> fillAndSum(new ArrayList<>('A')));
+		double b = Benchmarks.time(ROUNDS, ROUNDS, () -> fillAndSum(new ArrayList<>('B')));
+		double jdk = Benchmarks.time(ROUNDS, ROUNDS, () -> fillAndSum(new java.util.ArrayList<>()));
+		System.out.printf("ArrayList 'A' (+10):     %8.2f ms%n", a);
+		System.out.printf("ArrayList 'B' (x2):      %8.2f ms  %.1fx faster than 'A'%n", b, a / b);
+		System.out.printf("java.util.ArrayList:     %8.2f ms%n", jdk);
+
+		System.out.printf("%n%d lists of %d elements appended to one list%n", CHUNKS, SIZE / CHUNKS);
+		double single = Benchmarks.time(ROUNDS, ROUNDS, () -> concatenate(false));
+		double bulk = Benchmarks.time(ROUNDS, ROUNDS, () -> concatenate(true));
+		System.out.printf("add:     %8.2f ms%n", single);
+		System.out.printf("addAll:  %8.2f ms  %.1fx faster%n", bulk, single / bulk);
+	}
+
+}
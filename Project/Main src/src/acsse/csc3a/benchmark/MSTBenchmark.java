@@ -0,0 +1,84 @@
+package acsse.csc3a.benchmark;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+
+import javax.imageio.ImageIO;
+
+import acsse.csc3a.graph.Graph;
+import acsse.csc3a.graph.algorithms.MSTFeatures;
+import acsse.csc3a.graph.algorithms.MST_ENGINE;
+import acsse.csc3a.graph.algorithms.Prims_MST;
+import acsse.csc3a.imagegraph.ImageGraph;
+import acsse.csc3a.imagegraph.Point;
+
+/**
+ * A simple timing harness for the MST engines. It builds the graph of every
+ * reference image and compares the features and the running time of the
+ * {@link MST_ENGINE#HEAP} and {@link MST_ENGINE#BUCKET} engines. Run it from
+ * the project directory so the data folder can be found
+ */
+public class MSTBenchmark {
+
+	/**
+	 * Relative difference of two feature values
+	 *
+	 * @param exact       the value from the heap engine
+	 * @param approximate the value from the bucket engine
+	 * @return the difference as a percentage of the exact value
+	 */
+	private static double percent(float exact, float approximate) {
+		return exact == 0 ? 0 : 100.0 * (approximate - exact) / exact;
+	}
+
+	public static void main(String[] args) throws IOException {
+		File[] categories = new File("data/reference-data").listFiles(File::isDirectory);
+		if (categories == null) {
+			System.err.println("Run the benchmark from the project directory, data/reference-data was not found");
+			return;
+		}
+
+		// CalcMST reports every run, which would drown the results
+		PrintStream out = System.out;
+		PrintStream quiet = new PrintStream(PrintStream.nullOutputStream());
+
+		double heapTotal = 0, bucketTotal = 0;
+		for (File category : categories) {
+			File[] files = category.listFiles();
+			if (files == null)
+				continue;
+
+			for (File file : files) {
+				BufferedImage image = ImageIO.read(file);
+				if (image == null)
+					continue;
+
+				Graph<Point, Float> graph = new ImageGraph(image).getGraph();
+
+				System.setOut(quiet);
+				Prims_MST<Point> heapMST = new Prims_MST<>(MST_ENGINE.HEAP);
+				Prims_MST<Point> bucketMST = new Prims_MST<>(MST_ENGINE.BUCKET);
+				MSTFeatures heap = heapMST.CalcMST(graph);
+				MSTFeatures bucket = bucketMST.CalcMST(graph);
+				double heapTime = Benchmarks.time(() -> heapMST.CalcMST(graph).totalWeight);
+				double bucketTime = Benchmarks.time(() -> bucketMST.CalcMST(graph).totalWeight);
+				System.setOut(out);
+
+				heapTotal += heapTime;
+				bucketTotal += bucketTime;
+				System.out.printf(
+						"%-24.24s %-40.40s V=%8d E=%7d  heap: %7.1f ms  bucket: %7.1f ms  total %+.3f%%  average %+.3f%%  variance %+.3f%%  edges %+d%n",
+						category.getName(), file.getName(), graph.numVertices(), graph.numEdges(), heapTime,
+						bucketTime, percent(heap.totalWeight, bucket.totalWeight),
+						percent(heap.averageWeight, bucket.averageWeight), percent(heap.variance, bucket.variance),
+						bucket.edgeCount - heap.edgeCount);
+			}
+		}
+
+		System.out.printf("All reference images  heap: %.1f ms  bucket: %.1f ms  speedup: %.2fx%n", heapTotal,
+				bucketTotal, heapTotal / bucketTotal);
+	}
+
+}
@@ -0,0 +1,90 @@
+package acsse.csc3a.benchmark;
+
+import acsse.csc3a.graph.AdjacencyMapGraph;
+import acsse.csc3a.graph.Graph;
+import acsse.csc3a.graph.Vertex;
+import acsse.csc3a.imagegraph.Point;
+import acsse.csc3a.map.AdjacencyMap;
+import acsse.csc3a.map.CAPACITY_MODE;
+import acsse.csc3a.map.Map;
+
+/**
+ * A simple timing harness for the capacity modes of {@link AdjacencyMap}. A
+ * map keyed by the region centres of a full resolution image graph is filled,
+ * queried for every key and for as many missing keys, and then emptied, in
+ * each {@link CAPACITY_MODE}. The same workload is then run on a map keyed by
+ * graph {@link Vertex}es
+ */
+public class MapBenchmark {
+
+	/**
+	 * the number of entries, the vertices of a 1280x800 image
+	 */
+	private static final int SIZE = 1280 * 800;
+	private static final int WIDTH = 1280;
+
+	/**
+	 * Fills an adjacency map with the given keys, queries every key and as many
+	 * missing keys, and removes every key
+	 *
+	 * @param <K>     the key type
+	 * @param keys    the keys stored in the map
+	 * @param missing keys that are not in the map
+	 * @param mode    the capacity mode of the map
+	 * @return a checksum of the values that were read
+	 */
+	private static <K> long run(K[] keys, K[] missing, CAPACITY_MODE mode) {
+		Map<K, Integer> map = new AdjacencyMap<>(17, mode);
+		for (int i = 0; i < keys.length; i++)
+			map.put(keys[i], i);
+		long checksum = 0;
+		for (int i = 0; i < keys.length; i++) {
+			Integer value = map.get(keys[i]);
+			checksum += value == null ? 0 : value;
+			checksum += map.get(missing[i]) == null ? 0 : 1;
+		}
+		for (int i = 0; i < keys.length; i++)
+			map.remove(keys[i]);
+		return checksum;
+	}
+
+	/**
+	 * Prints the times of the workload in both capacity modes
+	 *
+	 * @param <K>     the key type
+	 * @param name    the key type being timed
+	 * @param keys    the keys stored in the map
+	 * @param missing keys that are not in the map
+	 */
+	private static <K> void compareModes(String name, K[] keys, K[] missing) {
+		double primeTime = Benchmarks.time(() -> run(keys, missing, CAPACITY_MODE.PRIME));
+		double powerOfTwoTime = Benchmarks.time(() -> run(keys, missing, CAPACITY_MODE.POWER_OF_TWO));
+		System.out.printf("%-14s PRIME: %8.1f ms  POWER_OF_TWO: %8.1f ms  speedup: %.2fx%n", name, primeTime,
+				powerOfTwoTime, primeTime / powerOfTwoTime);
+	}
+
+	public static void main(String[] args) {
+		System.out.printf("%d entries, put, get every key, get %d missing keys, remove every key%n", SIZE, SIZE);
+
+		// the region centres of an image graph, starting from a small table like a new map
+		Point[] points = new Point[SIZE];
+		Point[] missingPoints = new Point[SIZE];
+		for (int i = 0; i < SIZE; i++) {
+			points[i] = new Point(i % WIDTH, i / WIDTH, 0);
+			missingPoints[i] = new Point(i % WIDTH, i / WIDTH + SIZE / WIDTH, 0);
+		}
+		compareModes("Point", points, missingPoints);
+
+		Graph<Point, Float> graph = new AdjacencyMapGraph<>();
+		@SuppressWarnings("unchecked")
+		Vertex<Point>[] vertices = (Vertex<Point>[]) new Vertex<?>[SIZE];
+		@SuppressWarnings("unchecked")
+		Vertex<Point>[] missingVertices = (Vertex<Point>[]) new Vertex<?>[SIZE];
+		for (int i = 0; i < SIZE; i++) {
+			vertices[i] = graph.insertVertex(points[i]);
+			missingVertices[i] = graph.insertVertex(missingPoints[i]);
+		}
+		compareModes("Vertex", vertices, missingVertices);
+	}
+
+}
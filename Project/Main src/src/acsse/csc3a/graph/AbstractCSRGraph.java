@@ -0,0 +1,368 @@
+package acsse.csc3a.graph;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import acsse.csc3a.imagegraph.Point;
+
+/**
+ * The {@link Graph} side of an image graph stored in compressed sparse row
+ * (CSR) form. Subclasses decide where the vertex and adjacency arrays live and
+ * expose them through the primitive accessors, this class implements the graph
+ * interface on top of them.
+ *
+ * The edges incident to vertex v occupy the slots offset(v) to
+ * offset(v + 1) - 1, and every edge is also kept once, in insertion order. The
+ * {@link Vertex} and {@link Edge} instances handed out are lightweight handles
+ * created on demand. The graph cannot be modified once it has been built
+ */
+public abstract class AbstractCSRGraph implements IndexedGraph<Point, Float> {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Gets the x coordinate of a vertex
+	 * @param v the vertex id
+	 * @return the x coordinate
+	 */
+	public abstract int x(int v);
+
+	/**
+	 * Gets the y coordinate of a vertex
+	 * @param v the vertex id
+	 * @return the y coordinate
+	 */
+	public abstract int y(int v);
+
+	/**
+	 * Gets the colour of a vertex
+	 * @param v the vertex id
+	 * @return the packed ARGB colour
+	 */
+	public abstract int argb(int v);
+
+	/**
+	 * Gets the first adjacency slot of a vertex, the slots of vertex v run from
+	 * offset(v) up to offset(v + 1) - 1
+	 * @param v the vertex id, or numVertices for the end of the last vertex
+	 * @return the slot index
+	 */
+	public abstract int offset(int v);
+
+	/**
+	 * Gets the neighbouring vertex stored in an adjacency slot
+	 * @param slot the slot index
+	 * @return the id of the neighbour
+	 */
+	public abstract int target(int slot);
+
+	/**
+	 * Gets the weight of the edge stored in an adjacency slot
+	 * @param slot the slot index
+	 * @return the weight of the edge
+	 */
+	public abstract float weight(int slot);
+
+	/**
+	 * Gets the id of the edge stored in an adjacency slot
+	 * @param slot the slot index
+	 * @return the edge id
+	 */
+	public abstract int edge(int slot);
+
+	/**
+	 * Gets the first end point of an edge
+	 * @param e the edge id
+	 * @return the id of the vertex
+	 */
+	public abstract int edgeSource(int e);
+
+	/**
+	 * Gets the second end point of an edge
+	 * @param e the edge id
+	 * @return the id of the vertex
+	 */
+	public abstract int edgeTarget(int e);
+
+	/**
+	 * Gets the weight of an edge
+	 * @param e the edge id
+	 * @return the weight
+	 */
+	public abstract float edgeWeight(int e);
+
+	@Override
+	public Iterable<Vertex<Point>> vertices() {
+		return () -> new Iterator<Vertex<Point>>() {
+			private int cursor = 0;
+
+			@Override
+			public boolean hasNext() {
+				return cursor < numVertices();
+			}
+
+			@Override
+			public Vertex<Point> next() {
+				if (cursor >= numVertices())
+					throw new NoSuchElementException();
+				return new CSRVertex(cursor++);
+			}
+		};
+	}
+
+	@Override
+	public Iterable<Edge<Float>> edges() {
+		return () -> new Iterator<Edge<Float>>() {
+			private int cursor = 0;
+
+			@Override
+			public boolean hasNext() {
+				return cursor < numEdges();
+			}
+
+			@Override
+			public Edge<Float> next() {
+				if (cursor >= numEdges())
+					throw new NoSuchElementException();
+				return new CSREdge(cursor++);
+			}
+		};
+	}
+
+	@Override
+	public int degree(Vertex<Point> v) {
+		int id = validate(v);
+		return offset(id + 1) - offset(id);
+	}
+
+	@Override
+	public Iterable<Edge<Float>> allEdges(Vertex<Point> v) {
+		int id = validate(v);
+		final int start = offset(id);
+		final int end = offset(id + 1);
+
+		return () -> new Iterator<Edge<Float>>() {
+			private int slot = start;
+
+			@Override
+			public boolean hasNext() {
+				return slot < end;
+			}
+
+			@Override
+			public Edge<Float> next() {
+				if (slot >= end)
+					throw new NoSuchElementException();
+				return new CSREdge(edge(slot++));
+			}
+		};
+	}
+
+	@Override
+	public Edge<Float> getEdge(Vertex<Point> u, Vertex<Point> v) {
+		int origin = validate(u);
+		int destination = validate(v);
+		for (int slot = offset(origin); slot < offset(origin + 1); slot++) {
+			if (target(slot) == destination)
+				return new CSREdge(edge(slot));
+		}
+		return null;
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public Vertex<Point>[] endVertices(Edge<Float> e) {
+		int id = validate(e);
+		return (Vertex<Point>[]) new Vertex<?>[] { new CSRVertex(edgeSource(id)), new CSRVertex(edgeTarget(id)) };
+	}
+
+	@Override
+	public Vertex<Point> opposite(Vertex<Point> v, Edge<Float> e) throws IllegalArgumentException {
+		int vertex = validate(v);
+		int edge = validate(e);
+		if (edgeSource(edge) == vertex) {
+			return new CSRVertex(edgeTarget(edge));
+		} else if (edgeTarget(edge) == vertex) {
+			return new CSRVertex(edgeSource(edge));
+		} else {
+			throw new IllegalArgumentException("v is not incident to this edge");
+		}
+	}
+
+	/**
+	 * CSR graphs are read only
+	 *
+	 * @throws UnsupportedOperationException always
+	 */
+	@Override
+	public Vertex<Point> insertVertex(Point element) throws UnsupportedOperationException {
+		throw new UnsupportedOperationException("A CSR graph cannot be modified");
+	}
+
+	/**
+	 * CSR graphs are read only
+	 *
+	 * @throws UnsupportedOperationException always
+	 */
+	@Override
+	public Edge<Float> insertEdge(Vertex<Point> u, Vertex<Point> v, Float element)
+			throws UnsupportedOperationException {
+		throw new UnsupportedOperationException("A CSR graph cannot be modified");
+	}
+
+	/**
+	 * CSR graphs are read only
+	 *
+	 * @throws UnsupportedOperationException always
+	 */
+	@Override
+	public void removeVertex(Vertex<Point> v) throws UnsupportedOperationException {
+		throw new UnsupportedOperationException("A CSR graph cannot be modified");
+	}
+
+	/**
+	 * CSR graphs are read only
+	 *
+	 * @throws UnsupportedOperationException always
+	 */
+	@Override
+	public void removeEdge(Edge<Float> e) throws UnsupportedOperationException {
+		throw new UnsupportedOperationException("A CSR graph cannot be modified");
+	}
+
+	@Override
+	public int vertexIndex(Vertex<Point> v) throws IllegalArgumentException {
+		return validate(v);
+	}
+
+	@Override
+	public Vertex<Point> vertexAt(int index) throws IndexOutOfBoundsException {
+		if (index < 0 || index >= numVertices())
+			throw new IndexOutOfBoundsException("Invalid vertex index " + index);
+		return new CSRVertex(index);
+	}
+
+	@Override
+	public int edgeIndex(Edge<Float> e) throws IllegalArgumentException {
+		return validate(e);
+	}
+
+	@Override
+	public Edge<Float> edgeAt(int index) throws IndexOutOfBoundsException {
+		if (index < 0 || index >= numEdges())
+			throw new IndexOutOfBoundsException("Invalid edge index " + index);
+		return new CSREdge(index);
+	}
+
+	/**
+	 * Validates a vertex and returns its id
+	 *
+	 * @param v the vertex being queried
+	 * @return the id of the vertex
+	 * @throws IllegalArgumentException if the vertex does not belong to this graph
+	 */
+	private int validate(Vertex<Point> v) throws IllegalArgumentException {
+		if (!(v instanceof CSRVertex) || ((CSRVertex) v).graph() != this)
+			throw new IllegalArgumentException("Invalid vertex");
+		return ((CSRVertex) v).id;
+	}
+
+	/**
+	 * Validates an edge and returns its id
+	 *
+	 * @param e the edge being queried
+	 * @return the id of the edge
+	 * @throws IllegalArgumentException if the edge does not belong to this graph
+	 */
+	private int validate(Edge<Float> e) throws IllegalArgumentException {
+		if (!(e instanceof CSREdge) || ((CSREdge) e).graph() != this)
+			throw new IllegalArgumentException("Invalid edge");
+		return ((CSREdge) e).id;
+	}
+
+	/**
+	 * A lightweight handle to a vertex of the graph
+	 */
+	private class CSRVertex implements Vertex<Point> {
+		private static final long serialVersionUID = 1L;
+		private final int id;
+
+		CSRVertex(int id) {
+			this.id = id;
+		}
+
+		/**
+		 * Gets the graph this vertex belongs to
+		 * @return the owning graph
+		 */
+		AbstractCSRGraph graph() {
+			return AbstractCSRGraph.this;
+		}
+
+		@Override
+		public Point getElement() {
+			return new Point(x(id), y(id), argb(id));
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (!(obj instanceof CSRVertex))
+				return false;
+			CSRVertex other = (CSRVertex) obj;
+			return id == other.id && graph() == other.graph();
+		}
+
+		@Override
+		public int hashCode() {
+			return id;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("Vertex<%s>", getElement());
+		}
+	}
+
+	/**
+	 * A lightweight handle to an edge of the graph
+	 */
+	private class CSREdge implements Edge<Float> {
+		private static final long serialVersionUID = 1L;
+		private final int id;
+
+		CSREdge(int id) {
+			this.id = id;
+		}
+
+		/**
+		 * Gets the graph this edge belongs to
+		 * @return the owning graph
+		 */
+		AbstractCSRGraph graph() {
+			return AbstractCSRGraph.this;
+		}
+
+		@Override
+		public Float getElement() {
+			return edgeWeight(id);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (!(obj instanceof CSREdge))
+				return false;
+			CSREdge other = (CSREdge) obj;
+			return id == other.id && graph() == other.graph();
+		}
+
+		@Override
+		public int hashCode() {
+			return id;
+		}
+	}
+
+}
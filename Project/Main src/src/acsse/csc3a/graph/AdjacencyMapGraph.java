@@ -1,27 +1,47 @@
 package acsse.csc3a.graph;
 
 
-import acsse.csc3a.lists.LinkedPositionalList;
-import acsse.csc3a.lists.PositionalList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import acsse.csc3a.lists.ArrayList;
 import acsse.csc3a.map.AbstractMap;
 import acsse.csc3a.map.AdjacencyMap;
-import acsse.csc3a.lists.Position;
+import acsse.csc3a.map.CAPACITY_MODE;
 
 /**
- * A graph that is implemented using an adjacency map
+ * A graph that is implemented using an adjacency map. Vertices and edges are
+ * numbered densely in the order they are inserted, removing one moves the last
+ * vertex (or edge) into its index. The vertices and edges are kept in tables by
+ * their index, which they are iterated and removed through, so no list node or
+ * position is kept per vertex or edge
  * 
  * @param <V> the type the vertex will hold
  * @param <E> the type the edge will hold
  */
-public class AdjacencyMapGraph<V, E> implements Graph<V, E> {
+public class AdjacencyMapGraph<V, E> implements IndexedGraph<V, E> {
 
 	/**
-	 * A class for the vertex representation of the graph
+	 * A class for the vertex representation of the graph, the incident edges are
+	 * kept in a small array while the degree is low and moved into an incidence
+	 * map once the degree goes past the inline degree of the graph
 	 * @param <V>
 	 */
-	private class InnerVertex<V> implements Vertex<V> {
+	private class InnerVertex<V> implements Vertex<V>, Iterable<Edge<E>> {
 		private V element;
-		transient private Position<Vertex<V>> position;
+		transient private int index;
+
+		/*
+		 * the incident edges while the vertex is small, the neighbour of an edge is
+		 * its other endpoint so only the edges are stored
+		 */
+		transient private Edge<E>[] inlineEdges;
+		transient private int inlineCount;
+
+		/*
+		 * null until the degree goes past the inline degree
+		 */
 		transient private AbstractMap<Vertex<V>, Edge<E>> incidenceMap;
 
 		/**
@@ -30,11 +50,6 @@ public class AdjacencyMapGraph<V, E> implements Graph<V, E> {
 		 */
 		public InnerVertex(V element) {
 			this.element = element;
-			/*
-			 * undirected graph
-			 */
-			incidenceMap = new AdjacencyMap<>();
-			incidenceMap.updateLoadFactor((float) 0.5);
 		}
 
 		@Override
@@ -43,27 +58,134 @@ public class AdjacencyMapGraph<V, E> implements Graph<V, E> {
 		}
 
 		/**
-		 * Stores the position of this vertex within the graph's vertex list
-		 * @param p the position within the graphs vertex list
+		 * Stores the dense index of this vertex
+		 * @param index the index within the graph's vertex table
+		 */
+		public void setIndex(int index) {
+			this.index = index;
+		}
+
+		/**
+		 * Gets the dense index of this vertex
+		 * @return the index within the graph's vertex table
 		 */
-		public void setPosition(Position<Vertex<V>> p) {
-			position = p;
+		public int getIndex() {
+			return index;
 		}
 
 		/**
-		 * Gets the position of this vertex within the graph's vertex list
-		 * @return the position within the graphs vertex list
+		 * Gets the number of edges incident to this vertex
+		 * @return the degree
 		 */
-		public Position<Vertex<V>> getPosition() {
-			return position;
+		public int degree() {
+			return incidenceMap != null ? incidenceMap.size() : inlineCount;
 		}
 
-		/** 
-		 * Gets all edges incident to this vertex
-		 * @return reference to the underlying map of all edges
+		/**
+		 * Gets the edge between this vertex and a neighbour
+		 * @param v the neighbour
+		 * @return the edge, or null if they are not adjacent
 		 */
-		public AbstractMap<Vertex<V>, Edge<E>> getIncidenceMap() {
-			return incidenceMap;
+		public Edge<E> getIncident(Vertex<V> v) {
+			if (incidenceMap != null)
+				return incidenceMap.get(v);
+			for (int i = 0; i < inlineCount; i++) {
+				Vertex<?> neighbour = neighbour(inlineEdges[i]);
+				if (neighbour == v || neighbour.equals(v))
+					return inlineEdges[i];
+			}
+			return null;
+		}
+
+		/**
+		 * Adds an edge to a neighbour that is not yet adjacent, the edges are moved
+		 * into an incidence map when the degree goes past the inline degree
+		 * @param v the neighbour
+		 * @param e the edge between this vertex and the neighbour
+		 */
+		@SuppressWarnings("unchecked")
+		public void putIncident(Vertex<V> v, Edge<E> e) {
+			if (incidenceMap == null && inlineCount == inlineDegree) {
+				/*
+				 * undirected graph, incidence maps are probed on every edge insertion and
+				 * lookup so they use masked power of two tables
+				 */
+				incidenceMap = new AdjacencyMap<>(16, CAPACITY_MODE.POWER_OF_TWO);
+				incidenceMap.updateLoadFactor((float) 0.5);
+				for (int i = 0; i < inlineCount; i++) {
+					incidenceMap.put((Vertex<V>) neighbour(inlineEdges[i]), inlineEdges[i]);
+				}
+				inlineEdges = null;
+				inlineCount = 0;
+			}
+			if (incidenceMap != null) {
+				incidenceMap.put(v, e);
+				return;
+			}
+
+			if (inlineEdges == null) {
+				inlineEdges = (Edge<E>[]) new Edge<?>[Math.min(INITIAL_INLINE_CAPACITY, inlineDegree)];
+			} else if (inlineCount == inlineEdges.length) {
+				inlineEdges = Arrays.copyOf(inlineEdges, Math.min(inlineCount * 2, inlineDegree));
+			}
+			inlineEdges[inlineCount++] = e;
+		}
+
+		/**
+		 * Removes the edge to a neighbour, the remaining edges keep their order
+		 * @param v the neighbour
+		 */
+		public void removeIncident(Vertex<V> v) {
+			if (incidenceMap != null) {
+				incidenceMap.remove(v);
+				return;
+			}
+			for (int i = 0; i < inlineCount; i++) {
+				Vertex<?> neighbour = neighbour(inlineEdges[i]);
+				if (neighbour == v || neighbour.equals(v)) {
+					System.arraycopy(inlineEdges, i + 1, inlineEdges, i, inlineCount - i - 1);
+					inlineEdges[--inlineCount] = null;
+					return;
+				}
+			}
+		}
+
+		/**
+		 * Gets the other endpoint of an edge incident to this vertex
+		 * @param e the incident edge
+		 * @return the neighbour
+		 */
+		private Vertex<?> neighbour(Edge<E> e) {
+			Vertex<?>[] endpoints = validate(e).getEndpoint();
+			return endpoints[0] == this ? endpoints[1] : endpoints[0];
+		}
+
+		/**
+		 * Iterates the edges incident to this vertex, the vertex must not change
+		 * while it is being iterated
+		 * @return an iterator over the incident edges
+		 */
+		@Override
+		public Iterator<Edge<E>> iterator() {
+			if (incidenceMap != null)
+				return incidenceMap.values().iterator();
+			return new Iterator<Edge<E>>() {
+				private final Edge<E>[] edges = inlineEdges;
+				private final int count = inlineCount;
+				private int cursor = 0;
+
+				@Override
+				public boolean hasNext() {
+					return cursor < count;
+				}
+
+				@Override
+				public Edge<E> next() throws NoSuchElementException {
+					if (cursor >= count)
+						throw new NoSuchElementException();
+					return edges[cursor++];
+				}
+			};
 		}
 
 		@Override
@@ -91,7 +213,7 @@ public class AdjacencyMapGraph<V, E> implements Graph<V, E> {
 	 */
 	private class InnerEdge<E> implements Edge<E> {
 		private E element;
-		private Position<Edge<E>> position;
+		private int index;
 		private Vertex<V>[] endpoints;
 
 		/**
@@ -103,7 +225,7 @@ public class AdjacencyMapGraph<V, E> implements Graph<V, E> {
 		@SuppressWarnings("unchecked")
 		public InnerEdge(Vertex<V> u, Vertex<V> v, E element) {
 			this.element = element;
-			endpoints = (Vertex<V>[]) new Vertex[] { u, v };
+			endpoints = (Vertex<V>[]) new Vertex<?>[] { u, v };
 		}
 
 		@Override
@@ -119,17 +241,17 @@ public class AdjacencyMapGraph<V, E> implements Graph<V, E> {
 		}
 
 		/*
-		 * stores the position of the edge withini the vertex list
+		 * stores the dense index of the edge
 		 */
-		public void setPosition(Position<Edge<E>> p) {
-			position = p;
+		public void setIndex(int index) {
+			this.index = index;
 		}
 
 		/*
-		 * returns the position of the edge within the vertex list
+		 * returns the dense index of the edge
 		 */
-		public Position<Edge<E>> getPosition() {
-			return position;
+		public int getIndex() {
+			return index;
 		}
 
 		@SuppressWarnings("unchecked")
@@ -147,37 +269,90 @@ public class AdjacencyMapGraph<V, E> implements Graph<V, E> {
 
 	}
 
-	private PositionalList<Vertex<V>> vertices = new LinkedPositionalList<>();
-	private PositionalList<Edge<E>> edges = new LinkedPositionalList<>();
+	/**
+	 * the inline degree used by {@link #AdjacencyMapGraph()}, a vertex of an image
+	 * graph has at most 4 neighbours
+	 */
+	public static final int DEFAULT_INLINE_DEGREE = 4;
+
+	/**
+	 * the capacity of the inline edge array of a vertex when its first edge is
+	 * inserted
+	 */
+	private static final int INITIAL_INLINE_CAPACITY = 4;
+
+	/**
+	 * the capacity of the vertex and edge tables of an empty graph
+	 */
+	private static final int INITIAL_TABLE_CAPACITY = 16;
+
+	/*
+	 * the vertices and edges by their dense index, the first numVertices (or
+	 * numEdges) slots are used
+	 */
+	private Vertex<V>[] vertexTable = newVertexTable(INITIAL_TABLE_CAPACITY);
+	private Edge<E>[] edgeTable = newEdgeTable(INITIAL_TABLE_CAPACITY);
+	private int numVertices = 0;
+	private int numEdges = 0;
+
+	/**
+	 * the largest degree a vertex keeps its edges inline for
+	 */
+	private final int inlineDegree;
+
+	/**
+	 * Constructs an empty graph with the default inline degree
+	 */
+	public AdjacencyMapGraph() {
+		this(DEFAULT_INLINE_DEGREE);
+	}
+
+	/**
+	 * Constructs an empty graph
+	 * 
+	 * @param inlineDegree the largest degree a vertex keeps its edges in a small
+	 *                     array for, a vertex with more edges uses an incidence
+	 *                     map, 0 always uses the map
+	 * @throws IllegalArgumentException if the inline degree is negative
+	 */
+	public AdjacencyMapGraph(int inlineDegree) throws IllegalArgumentException {
+		if (inlineDegree < 0)
+			throw new IllegalArgumentException("Illegal inline degree: " + inlineDegree);
+		this.inlineDegree = inlineDegree;
+	}
 
 	@Override
 	public int numVertices() {
-		return vertices.size();
+		return numVertices;
 	}
 
+	/**
+	 * Iterates the vertices in index order, the graph must not change while it is
+	 * being iterated
+	 */
 	@Override
 	public Iterable<Vertex<V>> vertices() {
-		return vertices;
+		return () -> new TableIterator<>(vertexTable, numVertices);
 	}
 
 	@Override
 	public int degree(Vertex<V> v) {
 		InnerVertex<V> vert = validate(v);
-		return vert.getIncidenceMap().size();
+		return vert.degree();
 	}
 
 	@Override
 	public Iterable<Edge<E>> allEdges(Vertex<V> v) {
 		InnerVertex<V> vert = validate(v);
-		return vert.getIncidenceMap().values();
+		return vert;
 	}
 
 	@Override
 	public Edge<E> getEdge(Vertex<V> u, Vertex<V> v) {
 		// get the inner vertex by validating
 		InnerVertex<V> origin = validate(u);
-		// get the edge (value) from the map, using the vertex as the key
-		return origin.getIncidenceMap().get(v);
+		// get the edge incident to both vertices
+		return origin.getIncident(v);
 	}
 
 	@Override
@@ -202,7 +377,11 @@ public class AdjacencyMapGraph<V, E> implements Graph<V, E> {
 	@Override
 	public Vertex<V> insertVertex(V element) {
 		InnerVertex<V> v = new InnerVertex<>(element);
-		v.setPosition(vertices.addLast(v));
+		int index = numVertices++;
+		if (index == vertexTable.length)
+			vertexTable = Arrays.copyOf(vertexTable, index * 2);
+		vertexTable[index] = v;
+		v.setIndex(index);
 		return v;
 	}
 
@@ -210,11 +389,17 @@ public class AdjacencyMapGraph<V, E> implements Graph<V, E> {
 	public Edge<E> insertEdge(Vertex<V> u, Vertex<V> v, E element) throws IllegalArgumentException {
 		if (getEdge(u, v) == null) {
 			InnerEdge<E> e = new InnerEdge<>(u, v, element);
-			e.setPosition(edges.addLast(e));
+			int index = numEdges++;
+			if (index == edgeTable.length)
+				edgeTable = Arrays.copyOf(edgeTable, index * 2);
+			edgeTable[index] = e;
+			e.setIndex(index);
 			InnerVertex<V> origin = validate(u);
 			InnerVertex<V> dest = validate(v);
-			origin.getIncidenceMap().put(v, e);
-			dest.getIncidenceMap().put(u, e);
+			origin.putIncident(v, e);
+			// a self loop is incident to its vertex once
+			if (dest != origin)
+				dest.putIncident(u, e);
 
 			return e;
 		} else {
@@ -223,30 +408,89 @@ public class AdjacencyMapGraph<V, E> implements Graph<V, E> {
 	}
 
 	@Override
-	public void removeVertex(Vertex<V> v) {
+	public void removeVertex(Vertex<V> v) throws IllegalArgumentException {
+		vertexIndex(v); // checks that the vertex is still in this graph
 		InnerVertex<V> vert = validate(v);
-		for (Edge<E> e : vert.getIncidenceMap().values()) {
-			removeEdge(e);
+		/*
+		 * the vertex iterates its own edges and removeEdge changes them, so the edges
+		 * are copied before they are removed
+		 */
+		ArrayList<Edge<E>> incident = new ArrayList<>(vert.degree());
+		for (Edge<E> e : vert) {
+			incident.add(e);
 		}
-		for (Edge<E> e : vert.getIncidenceMap().values()) {
+		for (Edge<E> e : incident) {
 			removeEdge(e);
 		}
-		vertices.remove(vert.getPosition());
+
+		// the last vertex takes the index of the removed one
+		int last = --numVertices;
+		InnerVertex<V> moved = validate(vertexTable[last]);
+		vertexTable[vert.getIndex()] = moved;
+		moved.setIndex(vert.getIndex());
+		vertexTable[last] = null;
 	}
 
 	@Override
-	public void removeEdge(Edge<E> e) {
+	public void removeEdge(Edge<E> e) throws IllegalArgumentException {
+		edgeIndex(e); // checks that the edge is still in this graph
 		InnerEdge<E> edge = validate(e); // type check and cast
 		Vertex<V>[] endpoints = edge.getEndpoint(); // [u, v]
 		InnerVertex<V> u = validate(endpoints[0]);
 		InnerVertex<V> v = validate(endpoints[1]);
 
-		// Remove the edge from both vertices' maps
-		u.getIncidenceMap().remove(v);
-		v.getIncidenceMap().remove(u);
+		// Remove the edge from both vertices
+		u.removeIncident(v);
+		v.removeIncident(u);
+
+		// the last edge takes the index of the removed one
+		int last = --numEdges;
+		InnerEdge<E> moved = validate(edgeTable[last]);
+		edgeTable[edge.getIndex()] = moved;
+		moved.setIndex(edge.getIndex());
+		edgeTable[last] = null;
+	}
 
-		// Remove the edge from the graph's master edge list
-		edges.remove(edge.getPosition());
+	@Override
+	public int vertexIndex(Vertex<V> v) throws IllegalArgumentException {
+		InnerVertex<V> vert = validate(v);
+		int index = vert.getIndex();
+		if (index >= numVertices || vertexTable[index] != vert)
+			throw new IllegalArgumentException("Vertex does not belong to this graph");
+		return index;
+	}
+
+	@Override
+	public Vertex<V> vertexAt(int index) throws IndexOutOfBoundsException {
+		if (index < 0 || index >= numVertices)
+			throw new IndexOutOfBoundsException("Invalid vertex index " + index);
+		return vertexTable[index];
+	}
+
+	@Override
+	public int edgeIndex(Edge<E> e) throws IllegalArgumentException {
+		InnerEdge<E> edge = validate(e);
+		int index = edge.getIndex();
+		if (index >= numEdges || edgeTable[index] != edge)
+			throw new IllegalArgumentException("Edge does not belong to this graph");
+		return index;
+	}
+
+	@Override
+	public Edge<E> edgeAt(int index) throws IndexOutOfBoundsException {
+		if (index < 0 || index >= numEdges)
+			throw new IndexOutOfBoundsException("Invalid edge index " + index);
+		return edgeTable[index];
+	}
+
+	@SuppressWarnings("unchecked")
+	private Vertex<V>[] newVertexTable(int capacity) {
+		return (Vertex<V>[]) new Vertex<?>[capacity];
+	}
+
+	@SuppressWarnings("unchecked")
+	private Edge<E>[] newEdgeTable(int capacity) {
+		return (Edge<E>[]) new Edge<?>[capacity];
 	}
 
 	/*
@@ -273,12 +517,44 @@ public class AdjacencyMapGraph<V, E> implements Graph<V, E> {
 
 	@Override
 	public int numEdges() {
-		return edges.size();
+		return numEdges;
 	}
 
+	/**
+	 * Iterates the edges in index order, the graph must not change while it is
+	 * being iterated
+	 */
 	@Override
 	public Iterable<Edge<E>> edges() {
-		return edges;
+		return () -> new TableIterator<>(edgeTable, numEdges);
+	}
+
+	/**
+	 * Iterates the used slots of a vertex or edge table
+	 *
+	 * @param <T> the type of the table
+	 */
+	private static class TableIterator<T> implements Iterator<T> {
+		private final T[] table;
+		private final int count;
+		private int cursor = 0;
+
+		TableIterator(T[] table, int count) {
+			this.table = table;
+			this.count = count;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return cursor < count;
+		}
+
+		@Override
+		public T next() throws NoSuchElementException {
+			if (cursor >= count)
+				throw new NoSuchElementException();
+			return table[cursor++];
+		}
 	}
 
 }
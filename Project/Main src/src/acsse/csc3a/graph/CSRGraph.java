@@ -0,0 +1,188 @@
+package acsse.csc3a.graph;
+
+import java.util.Arrays;
+
+/**
+ * A read optimised image graph stored in compressed sparse row (CSR) form on
+ * the heap.
+ *
+ * Vertices are plain int ids, their coordinates and packed ARGB colours live
+ * in parallel primitive arrays. The edges incident to vertex v occupy the
+ * slots offsets[v] to offsets[v + 1] - 1 of the targets, weights and
+ * incidentEdges arrays, and every edge is also kept once, in insertion order,
+ * in the edge arrays. No object is held per vertex or per edge, the
+ * {@link Vertex} and {@link Edge} instances handed out through the
+ * {@link Graph} interface are lightweight handles created on demand (see
+ * {@link AbstractCSRGraph}).
+ *
+ * The graph cannot be modified once it has been built, algorithms that need
+ * speed can use the primitive accessors ({@link #offset(int)},
+ * {@link #target(int)}, {@link #weight(int)}, ...) directly. All of its fields
+ * are final, so it can be shared between threads and read concurrently without
+ * locking.
+ */
+public class CSRGraph extends AbstractCSRGraph {
+
+	private static final long serialVersionUID = 1L;
+
+	private final int numVertices;
+	private final int numEdges;
+
+	/**
+	 * coordinates and packed ARGB colour of every vertex
+	 */
+	private final int[] xs, ys, colours;
+
+	/**
+	 * start of each vertex's adjacency slots, numVertices + 1 entries
+	 */
+	private final int[] offsets;
+
+	/**
+	 * per adjacency slot, the neighbouring vertex, the weight and the id of the
+	 * edge
+	 */
+	private final int[] targets;
+	private final float[] weights;
+	private final int[] incidentEdges;
+
+	/**
+	 * per edge, in insertion order, the two end points and the weight
+	 */
+	private final int[] edgeSources, edgeTargets;
+	private final float[] edgeWeights;
+
+	/**
+	 * Builds the graph from vertex and edge arrays. The arrays are owned by the
+	 * graph afterwards and are trimmed to their used length
+	 *
+	 * @param xs          x coordinate of each vertex
+	 * @param ys          y coordinate of each vertex
+	 * @param colours     packed ARGB colour of each vertex
+	 * @param numVertices number of vertices in the vertex arrays
+	 * @param edgeSources first end point of each edge
+	 * @param edgeTargets second end point of each edge
+	 * @param edgeWeights weight of each edge
+	 * @param numEdges    number of edges in the edge arrays
+	 * @throws IllegalArgumentException if an edge refers to a vertex that does not
+	 *                                  exist
+	 */
+	public CSRGraph(int[] xs, int[] ys, int[] colours, int numVertices, int[] edgeSources, int[] edgeTargets,
+			float[] edgeWeights, int numEdges) throws IllegalArgumentException {
+		this.numVertices = numVertices;
+		this.numEdges = numEdges;
+		this.xs = trim(xs, numVertices);
+		this.ys = trim(ys, numVertices);
+		this.colours = trim(colours, numVertices);
+		this.edgeSources = trim(edgeSources, numEdges);
+		this.edgeTargets = trim(edgeTargets, numEdges);
+		this.edgeWeights = edgeWeights.length == numEdges ? edgeWeights : Arrays.copyOf(edgeWeights, numEdges);
+
+		// count the degree of every vertex, shifted by one for the prefix sum
+		offsets = new int[numVertices + 1];
+		for (int e = 0; e < numEdges; e++) {
+			int u = this.edgeSources[e];
+			int v = this.edgeTargets[e];
+			if (u < 0 || u >= numVertices || v < 0 || v >= numVertices)
+				throw new IllegalArgumentException("Edge " + e + " refers to a vertex that does not exist");
+			offsets[u + 1]++;
+			offsets[v + 1]++;
+		}
+		for (int v = 0; v < numVertices; v++) {
+			offsets[v + 1] += offsets[v];
+		}
+
+		// fill the slots in edge order, so each vertex sees its edges in insertion order
+		targets = new int[2 * numEdges];
+		weights = new float[2 * numEdges];
+		incidentEdges = new int[2 * numEdges];
+		int[] next = Arrays.copyOf(offsets, numVertices);
+		for (int e = 0; e < numEdges; e++) {
+			int u = this.edgeSources[e];
+			int v = this.edgeTargets[e];
+			float w = this.edgeWeights[e];
+
+			int slot = next[u]++;
+			targets[slot] = v;
+			weights[slot] = w;
+			incidentEdges[slot] = e;
+
+			slot = next[v]++;
+			targets[slot] = u;
+			weights[slot] = w;
+			incidentEdges[slot] = e;
+		}
+	}
+
+	/**
+	 * Trims an array to its used length
+	 *
+	 * @param array  the array
+	 * @param length the used length
+	 * @return the array, or a copy of its used part
+	 */
+	private static int[] trim(int[] array, int length) {
+		return array.length == length ? array : Arrays.copyOf(array, length);
+	}
+
+	@Override
+	public int x(int v) {
+		return xs[v];
+	}
+
+	@Override
+	public int y(int v) {
+		return ys[v];
+	}
+
+	@Override
+	public int argb(int v) {
+		return colours[v];
+	}
+
+	@Override
+	public int offset(int v) {
+		return offsets[v];
+	}
+
+	@Override
+	public int target(int slot) {
+		return targets[slot];
+	}
+
+	@Override
+	public float weight(int slot) {
+		return weights[slot];
+	}
+
+	@Override
+	public int edge(int slot) {
+		return incidentEdges[slot];
+	}
+
+	@Override
+	public int edgeSource(int e) {
+		return edgeSources[e];
+	}
+
+	@Override
+	public int edgeTarget(int e) {
+		return edgeTargets[e];
+	}
+
+	@Override
+	public float edgeWeight(int e) {
+		return edgeWeights[e];
+	}
+
+	@Override
+	public int numVertices() {
+		return numVertices;
+	}
+
+	@Override
+	public int numEdges() {
+		return numEdges;
+	}
+
+}
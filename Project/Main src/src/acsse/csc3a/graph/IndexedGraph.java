@@ -0,0 +1,45 @@
+package acsse.csc3a.graph;
+
+/**
+ * A graph whose vertices and edges are numbered with dense indices from 0 up
+ * to the number of vertices (or edges) minus one. Algorithms can use these
+ * indices to keep per vertex or per edge state in plain arrays instead of maps
+ * keyed by vertices
+ *
+ * @param <V> the type the vertex will hold
+ * @param <E> the type the edge will hold
+ */
+public interface IndexedGraph<V, E> extends Graph<V, E> {
+
+	/**
+	 * Returns the index of a vertex of this graph
+	 * @param v the vertex being queried
+	 * @return an index between 0 and {@link #numVertices()} - 1
+	 * @throws IllegalArgumentException if the vertex does not belong to this graph
+	 */
+	int vertexIndex(Vertex<V> v) throws IllegalArgumentException;
+
+	/**
+	 * Returns the vertex with the given index
+	 * @param index the index being queried
+	 * @return the vertex at that index
+	 * @throws IndexOutOfBoundsException if there is no vertex with that index
+	 */
+	Vertex<V> vertexAt(int index) throws IndexOutOfBoundsException;
+
+	/**
+	 * Returns the index of an edge of this graph
+	 * @param e the edge being queried
+	 * @return an index between 0 and {@link #numEdges()} - 1
+	 * @throws IllegalArgumentException if the edge does not belong to this graph
+	 */
+	int edgeIndex(Edge<E> e) throws IllegalArgumentException;
+
+	/**
+	 * Returns the edge with the given index
+	 * @param index the index being queried
+	 * @return the edge at that index
+	 * @throws IndexOutOfBoundsException if there is no edge with that index
+	 */
+	Edge<E> edgeAt(int index) throws IndexOutOfBoundsException;
+}
@@ -0,0 +1,439 @@
+package acsse.csc3a.graph;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.NotSerializableException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * A read only image graph viewed directly over its binary file format, usually
+ * mapped from a file with {@link #map(FileChannel, long)}. Opening a graph
+ * costs a map call, nothing is deserialised or rebuilt, the pages are read by
+ * the operating system as the graph is used.
+ *
+ * The format is little endian and made of a header followed by four packed
+ * sections
+ *
+ * <pre>
+ * header    int magic, int version, int numVertices, int numEdges
+ * vertices  numVertices times (int x, int y, int argb)
+ * edges     numEdges times (int source, int target, float weight)
+ * offsets   numVertices + 1 times int, the first slot of each vertex
+ * slots     2 * numEdges times (int target, int edge, float weight)
+ * </pre>
+ *
+ * The offsets and slots are the CSR adjacency of {@link CSRGraph}, storing
+ * them is what lets the file be used as a graph as it is. Opening a graph reads
+ * it once to check that every offset, vertex and edge id is in range, so a
+ * corrupt file fails to open instead of failing later, somewhere in a read.
+ *
+ * Closing the graph releases its buffers, a mapping is removed once the buffers
+ * are collected, so a reader that still holds a buffer keeps it valid. The
+ * graph must not be closed while it is being read. A serialized graph is written in the
+ * binary format and read back into direct buffers, a closed graph cannot be
+ * serialized
+ */
+public class MappedCSRGraph extends AbstractCSRGraph implements AutoCloseable {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * "IGRF" read as a little endian int
+	 */
+	public static final int MAGIC = 0x46524749;
+	public static final int VERSION = 1;
+	public static final int HEADER_BYTES = 4 * Integer.BYTES;
+
+	private static final int VERTEX_BYTES = 3 * Integer.BYTES;
+	private static final int EDGE_BYTES = 2 * Integer.BYTES + Float.BYTES;
+	private static final int SLOT_BYTES = 2 * Integer.BYTES + Float.BYTES;
+
+	/**
+	 * the size of the buffer the sections are written through
+	 */
+	private static final int WRITE_BUFFER_BYTES = 1 << 16;
+
+	private static final ByteBuffer CLOSED = ByteBuffer.allocate(0);
+
+	private final int numVertices;
+	private final int numEdges;
+	private volatile boolean closed = false;
+
+	private transient ByteBuffer vertices;
+	private transient ByteBuffer edges;
+	private transient ByteBuffer offsets;
+	private transient ByteBuffer slots;
+
+	/**
+	 * Views the sections of a graph
+	 *
+	 * @param numVertices the number of vertices
+	 * @param numEdges    the number of edges
+	 * @param vertices    the vertex section
+	 * @param edges       the edge section
+	 * @param offsets     the offset section
+	 * @param slots       the slot section
+	 */
+	private MappedCSRGraph(int numVertices, int numEdges, ByteBuffer vertices, ByteBuffer edges, ByteBuffer offsets,
+			ByteBuffer slots) {
+		this.numVertices = numVertices;
+		this.numEdges = numEdges;
+		this.vertices = vertices.order(ByteOrder.LITTLE_ENDIAN);
+		this.edges = edges.order(ByteOrder.LITTLE_ENDIAN);
+		this.offsets = offsets.order(ByteOrder.LITTLE_ENDIAN);
+		this.slots = slots.order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	/**
+	 * Maps a graph written by {@link #write(AbstractCSRGraph, WritableByteChannel)}
+	 * from a file. The channel may be closed afterwards, the mapping stays valid
+	 *
+	 * @param channel  the file holding the graph
+	 * @param position where the graph starts in the file
+	 * @return the graph viewed over the mapped file
+	 * @throws IOException when the file does not hold a valid graph of this
+	 *                     version or is truncated
+	 */
+	public static MappedCSRGraph map(FileChannel channel, long position) throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+		while (header.hasRemaining()) {
+			if (channel.read(header, position + header.position()) < 0)
+				throw new EOFException("The graph header is truncated");
+		}
+		header.flip();
+		int numVertices = readHeader(header);
+		int numEdges = header.getInt();
+
+		long[] sizes = sectionSizes(numVertices, numEdges);
+		long start = position + HEADER_BYTES;
+		long end = start;
+		for (long size : sizes) {
+			end += size;
+		}
+		if (channel.size() < end)
+			throw new EOFException("The graph file is truncated");
+
+		ByteBuffer[] sections = new ByteBuffer[sizes.length];
+		for (int i = 0; i < sizes.length; i++) {
+			sections[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, sizes[i]);
+			start += sizes[i];
+		}
+		return checked(new MappedCSRGraph(numVertices, numEdges, sections[0], sections[1], sections[2], sections[3]));
+	}
+
+	/**
+	 * Reads a graph written by {@link #write(AbstractCSRGraph, WritableByteChannel)}
+	 * from a stream, each section is read into a buffer with a single bulk read
+	 *
+	 * @param channel the stream holding the graph
+	 * @param direct  true to read the sections into direct buffers, off the heap
+	 * @return the graph viewed over the buffers
+	 * @throws IOException when the stream does not hold a valid graph of this
+	 *                     version or ends early
+	 */
+	public static MappedCSRGraph read(ReadableByteChannel channel, boolean direct) throws IOException {
+		ByteBuffer header = readFully(channel, ByteBuffer.allocate(HEADER_BYTES));
+		header.order(ByteOrder.LITTLE_ENDIAN);
+		int numVertices = readHeader(header);
+		int numEdges = header.getInt();
+
+		long[] sizes = sectionSizes(numVertices, numEdges);
+		ByteBuffer[] sections = new ByteBuffer[sizes.length];
+		for (int i = 0; i < sizes.length; i++) {
+			int size = (int) sizes[i];
+			sections[i] = readFully(channel, direct ? ByteBuffer.allocateDirect(size) : ByteBuffer.allocate(size));
+		}
+		return checked(new MappedCSRGraph(numVertices, numEdges, sections[0], sections[1], sections[2], sections[3]));
+	}
+
+	/**
+	 * Checks in one pass over the sections that the graph can be read safely: the
+	 * offsets start at 0, never decrease and end at 2 * numEdges, every edge joins
+	 * two existing vertices, and every slot of vertex v holds an existing edge of
+	 * v and the other end point of that edge. A graph that fails is closed
+	 *
+	 * @param graph the graph being checked
+	 * @return the graph
+	 * @throws IOException when the graph is corrupt
+	 */
+	private static MappedCSRGraph checked(MappedCSRGraph graph) throws IOException {
+		int n = graph.numVertices;
+		int m = graph.numEdges;
+		try {
+			for (int e = 0; e < m; e++) {
+				int u = graph.edgeSource(e);
+				int v = graph.edgeTarget(e);
+				if (u < 0 || u >= n || v < 0 || v >= n)
+					throw new IOException("Corrupt graph: edge " + e + " refers to a vertex that does not exist");
+			}
+			if (graph.offset(0) != 0 || graph.offset(n) != 2 * m)
+				throw new IOException("Corrupt graph: the offsets do not span the slots");
+			for (int v = 0; v < n; v++) {
+				int end = graph.offset(v + 1);
+				if (end < graph.offset(v) || end > 2 * m)
+					throw new IOException("Corrupt graph: the offsets are out of order at vertex " + v);
+				for (int slot = graph.offset(v); slot < end; slot++) {
+					int e = graph.edge(slot);
+					if (e < 0 || e >= m)
+						throw new IOException("Corrupt graph: slot " + slot + " refers to an edge that does not exist");
+					int target = graph.target(slot);
+					int u = graph.edgeSource(e);
+					int w = graph.edgeTarget(e);
+					if (!(u == v && w == target) && !(w == v && u == target))
+						throw new IOException("Corrupt graph: slot " + slot + " does not match edge " + e);
+				}
+			}
+		} catch (IOException e) {
+			graph.close();
+			throw e;
+		}
+		return graph;
+	}
+
+	/**
+	 * Writes a graph in the binary format
+	 *
+	 * @param graph   the graph being written
+	 * @param channel where the graph is written to
+	 * @return the number of bytes written
+	 * @throws IOException when the graph could not be written
+	 */
+	public static long write(AbstractCSRGraph graph, WritableByteChannel channel) throws IOException {
+		int n = graph.numVertices();
+		int m = graph.numEdges();
+		// fails before anything is written when a section is too large to be read back
+		sectionSizes(n, m);
+
+		ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+		long written = 0;
+		buffer.putInt(MAGIC).putInt(VERSION).putInt(n).putInt(m);
+
+		for (int v = 0; v < n; v++) {
+			written += flushFor(buffer, channel, VERTEX_BYTES);
+			buffer.putInt(graph.x(v)).putInt(graph.y(v)).putInt(graph.argb(v));
+		}
+		for (int e = 0; e < m; e++) {
+			written += flushFor(buffer, channel, EDGE_BYTES);
+			buffer.putInt(graph.edgeSource(e)).putInt(graph.edgeTarget(e)).putFloat(graph.edgeWeight(e));
+		}
+		for (int v = 0; v <= n; v++) {
+			written += flushFor(buffer, channel, Integer.BYTES);
+			buffer.putInt(graph.offset(v));
+		}
+		for (int slot = 0; slot < 2 * m; slot++) {
+			written += flushFor(buffer, channel, SLOT_BYTES);
+			buffer.putInt(graph.target(slot)).putInt(graph.edge(slot)).putFloat(graph.weight(slot));
+		}
+		return written + flushFor(buffer, channel, WRITE_BUFFER_BYTES);
+	}
+
+	/**
+	 * Writes out the buffer when it has no room for the next record
+	 *
+	 * @param buffer  the buffer being filled
+	 * @param channel where the buffer is written to
+	 * @param bytes   the size of the next record
+	 * @return the number of bytes written
+	 * @throws IOException when the buffer could not be written
+	 */
+	private static int flushFor(ByteBuffer buffer, WritableByteChannel channel, int bytes) throws IOException {
+		if (buffer.remaining() >= bytes)
+			return 0;
+		buffer.flip();
+		int written = buffer.remaining();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+		return written;
+	}
+
+	/**
+	 * Fills a buffer from a channel
+	 *
+	 * @param channel the channel being read
+	 * @param buffer  the buffer being filled
+	 * @return the buffer, flipped for reading
+	 * @throws IOException when the channel ends before the buffer is full
+	 */
+	private static ByteBuffer readFully(ReadableByteChannel channel, ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer) < 0)
+				throw new EOFException("The graph is truncated");
+		}
+		return buffer.flip();
+	}
+
+	/**
+	 * Checks the magic number and version of a header
+	 *
+	 * @param header the header, positioned at its start
+	 * @return the number of vertices, the header is left at the number of edges
+	 * @throws IOException when the header is not one of this version
+	 */
+	private static int readHeader(ByteBuffer header) throws IOException {
+		if (header.getInt() != MAGIC)
+			throw new IOException("Not a graph file");
+		int version = header.getInt();
+		if (version != VERSION)
+			throw new IOException("Unsupported graph file version: " + version);
+		return header.getInt();
+	}
+
+	/**
+	 * Computes the size in bytes of each section
+	 *
+	 * @param numVertices the number of vertices
+	 * @param numEdges    the number of edges
+	 * @return the sizes of the vertex, edge, offset and slot sections
+	 * @throws IOException when the counts are negative or a section does not fit
+	 *                     in a buffer
+	 */
+	private static long[] sectionSizes(int numVertices, int numEdges) throws IOException {
+		if (numVertices < 0 || numEdges < 0)
+			throw new IOException("Corrupt graph header: " + numVertices + " vertices, " + numEdges + " edges");
+		long[] sizes = { (long) numVertices * VERTEX_BYTES, (long) numEdges * EDGE_BYTES,
+				((long) numVertices + 1) * Integer.BYTES, 2L * numEdges * SLOT_BYTES };
+		for (long size : sizes) {
+			if (size > Integer.MAX_VALUE)
+				throw new IOException("A graph of " + numVertices + " vertices and " + numEdges
+						+ " edges does not fit in the format");
+		}
+		return sizes;
+	}
+
+	/**
+	 * Determines if the graph was closed
+	 *
+	 * @return true once {@link #close()} was called
+	 */
+	public boolean isClosed() {
+		return closed;
+	}
+
+	/**
+	 * Releases the buffers of the graph, closing a closed graph does nothing.
+	 * Afterwards the graph reports an IllegalStateException and the primitive
+	 * accessors an IndexOutOfBoundsException
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		vertices = edges = offsets = slots = CLOSED;
+	}
+
+	/**
+	 * Writes the graph in the binary format after its counts
+	 *
+	 * @param out the stream being written
+	 * @throws IOException when the graph is closed or could not be written
+	 */
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		if (closed)
+			throw new NotSerializableException("A closed graph cannot be serialized");
+		out.defaultWriteObject();
+		write(this, Channels.newChannel(out));
+	}
+
+	/**
+	 * Reads a graph written by {@link #writeObject(ObjectOutputStream)} into direct
+	 * buffers
+	 *
+	 * @param in the stream being read
+	 * @throws IOException            when the stream does not hold a valid graph
+	 * @throws ClassNotFoundException when a class of the stream is missing
+	 */
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		MappedCSRGraph graph = read(Channels.newChannel(in), true);
+		if (graph.numVertices != numVertices || graph.numEdges != numEdges) {
+			graph.close();
+			throw new InvalidObjectException("The graph does not match its counts");
+		}
+		vertices = graph.vertices;
+		edges = graph.edges;
+		offsets = graph.offsets;
+		slots = graph.slots;
+	}
+
+	/**
+	 * Checks that the graph is still open
+	 *
+	 * @throws IllegalStateException if the graph was closed
+	 */
+	private void checkOpen() throws IllegalStateException {
+		if (closed)
+			throw new IllegalStateException("The graph was closed");
+	}
+
+	@Override
+	public int x(int v) {
+		return vertices.getInt(v * VERTEX_BYTES);
+	}
+
+	@Override
+	public int y(int v) {
+		return vertices.getInt(v * VERTEX_BYTES + Integer.BYTES);
+	}
+
+	@Override
+	public int argb(int v) {
+		return vertices.getInt(v * VERTEX_BYTES + 2 * Integer.BYTES);
+	}
+
+	@Override
+	public int offset(int v) {
+		return offsets.getInt(v * Integer.BYTES);
+	}
+
+	@Override
+	public int target(int slot) {
+		return slots.getInt(slot * SLOT_BYTES);
+	}
+
+	@Override
+	public int edge(int slot) {
+		return slots.getInt(slot * SLOT_BYTES + Integer.BYTES);
+	}
+
+	@Override
+	public float weight(int slot) {
+		return slots.getFloat(slot * SLOT_BYTES + 2 * Integer.BYTES);
+	}
+
+	@Override
+	public int edgeSource(int e) {
+		return edges.getInt(e * EDGE_BYTES);
+	}
+
+	@Override
+	public int edgeTarget(int e) {
+		return edges.getInt(e * EDGE_BYTES + Integer.BYTES);
+	}
+
+	@Override
+	public float edgeWeight(int e) {
+		return edges.getFloat(e * EDGE_BYTES + 2 * Integer.BYTES);
+	}
+
+	@Override
+	public int numVertices() throws IllegalStateException {
+		checkOpen();
+		return numVertices;
+	}
+
+	@Override
+	public int numEdges() throws IllegalStateException {
+		checkOpen();
+		return numEdges;
+	}
+
+}
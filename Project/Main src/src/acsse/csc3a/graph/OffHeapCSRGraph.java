@@ -0,0 +1,330 @@
+package acsse.csc3a.graph;
+
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.NotSerializableException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.Channels;
+
+/**
+ * An image graph stored in compressed sparse row (CSR) form outside of the
+ * heap. The coordinates, colours and adjacency arrays of {@link CSRGraph} are
+ * kept in direct buffers, so the garbage collector only sees this object and a
+ * handful of buffer objects however large the graph is, and never copies or
+ * scans the graph data.
+ *
+ * The graph is {@link AutoCloseable}, closing it releases its buffers and any
+ * later use of the graph fails. The native memory itself is returned when the
+ * released buffers are next collected, so a reader that still holds a buffer
+ * keeps its memory alive. Reads may happen from any number of threads, but the
+ * graph must not be closed while it is being read.
+ *
+ * A serialized graph is written in the format of {@link MappedCSRGraph} and is
+ * read back into new off heap buffers, a closed graph cannot be serialized
+ */
+public class OffHeapCSRGraph extends AbstractCSRGraph implements AutoCloseable {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * the largest number of elements of one buffer, a buffer is indexed by int
+	 * bytes
+	 */
+	private static final int MAX_ELEMENTS = Integer.MAX_VALUE / Integer.BYTES;
+
+	private static final IntBuffer CLOSED_INTS = IntBuffer.allocate(0);
+	private static final FloatBuffer CLOSED_FLOATS = FloatBuffer.allocate(0);
+
+	private final int numVertices;
+	private final int numEdges;
+	private volatile boolean closed = false;
+
+	/*
+	 * the same layout as the arrays of CSRGraph
+	 */
+	private transient IntBuffer xs, ys, colours;
+	private transient IntBuffer offsets;
+	private transient IntBuffer targets;
+	private transient FloatBuffer weights;
+	private transient IntBuffer incidentEdges;
+	private transient IntBuffer edgeSources, edgeTargets;
+	private transient FloatBuffer edgeWeights;
+
+	/**
+	 * Builds the graph from vertex and edge arrays, the arrays are copied out of
+	 * the heap and are not kept
+	 *
+	 * @param xs          x coordinate of each vertex
+	 * @param ys          y coordinate of each vertex
+	 * @param colours     packed ARGB colour of each vertex
+	 * @param numVertices number of vertices in the vertex arrays
+	 * @param edgeSources first end point of each edge
+	 * @param edgeTargets second end point of each edge
+	 * @param edgeWeights weight of each edge
+	 * @param numEdges    number of edges in the edge arrays
+	 * @throws IllegalArgumentException if an edge refers to a vertex that does not
+	 *                                  exist, or the graph is too large for a
+	 *                                  buffer
+	 */
+	public OffHeapCSRGraph(int[] xs, int[] ys, int[] colours, int numVertices, int[] edgeSources, int[] edgeTargets,
+			float[] edgeWeights, int numEdges) throws IllegalArgumentException {
+		if (numVertices >= MAX_ELEMENTS || numEdges > MAX_ELEMENTS / 2)
+			throw new IllegalArgumentException(
+					"A graph of " + numVertices + " vertices and " + numEdges + " edges does not fit in a buffer");
+		this.numVertices = numVertices;
+		this.numEdges = numEdges;
+
+		this.xs = ints(numVertices).put(xs, 0, numVertices);
+		this.ys = ints(numVertices).put(ys, 0, numVertices);
+		this.colours = ints(numVertices).put(colours, 0, numVertices);
+		this.edgeSources = ints(numEdges).put(edgeSources, 0, numEdges);
+		this.edgeTargets = ints(numEdges).put(edgeTargets, 0, numEdges);
+		this.edgeWeights = floats(numEdges).put(edgeWeights, 0, numEdges);
+
+		// count the degree of every vertex, shifted by one for the prefix sum
+		offsets = ints(numVertices + 1);
+		for (int e = 0; e < numEdges; e++) {
+			int u = edgeSources[e];
+			int v = edgeTargets[e];
+			if (u < 0 || u >= numVertices || v < 0 || v >= numVertices)
+				throw new IllegalArgumentException("Edge " + e + " refers to a vertex that does not exist");
+			offsets.put(u + 1, offsets.get(u + 1) + 1);
+			offsets.put(v + 1, offsets.get(v + 1) + 1);
+		}
+		for (int v = 0; v < numVertices; v++) {
+			offsets.put(v + 1, offsets.get(v + 1) + offsets.get(v));
+		}
+
+		/*
+		 * fill the slots in edge order like CSRGraph, offsets[v] serves as the fill
+		 * cursor of v and ends at the start of v + 1, so the offsets are shifted back
+		 * afterwards instead of keeping a cursor array on the heap
+		 */
+		targets = ints(2 * numEdges);
+		weights = floats(2 * numEdges);
+		incidentEdges = ints(2 * numEdges);
+		for (int e = 0; e < numEdges; e++) {
+			int u = edgeSources[e];
+			int v = edgeTargets[e];
+			float w = edgeWeights[e];
+
+			int slot = offsets.get(u);
+			offsets.put(u, slot + 1);
+			targets.put(slot, v);
+			weights.put(slot, w);
+			incidentEdges.put(slot, e);
+
+			slot = offsets.get(v);
+			offsets.put(v, slot + 1);
+			targets.put(slot, u);
+			weights.put(slot, w);
+			incidentEdges.put(slot, e);
+		}
+		for (int v = numVertices; v > 0; v--) {
+			offsets.put(v, offsets.get(v - 1));
+		}
+		offsets.put(0, 0);
+	}
+
+	/**
+	 * Copies a CSR graph out of the heap
+	 *
+	 * @param graph the graph being copied
+	 * @return the off heap copy, with the same vertex and edge ids
+	 * @throws IllegalArgumentException if the graph is too large for a buffer
+	 */
+	public static OffHeapCSRGraph copyOf(AbstractCSRGraph graph) throws IllegalArgumentException {
+		int n = graph.numVertices();
+		int m = graph.numEdges();
+		int[] xs = new int[n], ys = new int[n], colours = new int[n];
+		for (int v = 0; v < n; v++) {
+			xs[v] = graph.x(v);
+			ys[v] = graph.y(v);
+			colours[v] = graph.argb(v);
+		}
+		int[] sources = new int[m], targets = new int[m];
+		float[] weights = new float[m];
+		for (int e = 0; e < m; e++) {
+			sources[e] = graph.edgeSource(e);
+			targets[e] = graph.edgeTarget(e);
+			weights[e] = graph.edgeWeight(e);
+		}
+		return new OffHeapCSRGraph(xs, ys, colours, n, sources, targets, weights, m);
+	}
+
+	/**
+	 * Allocates a direct buffer of ints
+	 *
+	 * @param length the number of ints
+	 * @return the buffer
+	 */
+	private static IntBuffer ints(int length) {
+		return ByteBuffer.allocateDirect(length * Integer.BYTES).order(ByteOrder.nativeOrder()).asIntBuffer();
+	}
+
+	/**
+	 * Allocates a direct buffer of floats
+	 *
+	 * @param length the number of floats
+	 * @return the buffer
+	 */
+	private static FloatBuffer floats(int length) {
+		return ByteBuffer.allocateDirect(length * Float.BYTES).order(ByteOrder.nativeOrder()).asFloatBuffer();
+	}
+
+	/**
+	 * Writes the graph in the format of {@link MappedCSRGraph} after its counts
+	 *
+	 * @param out the stream being written
+	 * @throws IOException when the graph is closed or could not be written
+	 */
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		if (closed)
+			throw new NotSerializableException("A closed graph cannot be serialized");
+		out.defaultWriteObject();
+		MappedCSRGraph.write(this, Channels.newChannel(out));
+	}
+
+	/**
+	 * Reads a graph written by {@link #writeObject(ObjectOutputStream)} into new
+	 * off heap buffers, the adjacency is copied as it is and not rebuilt
+	 *
+	 * @param in the stream being read
+	 * @throws IOException            when the stream does not hold a valid graph
+	 * @throws ClassNotFoundException when a class of the stream is missing
+	 */
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		try (MappedCSRGraph graph = MappedCSRGraph.read(Channels.newChannel(in), false)) {
+			if (graph.numVertices() != numVertices || graph.numEdges() != numEdges)
+				throw new InvalidObjectException("The graph does not match its counts");
+			xs = ints(numVertices);
+			ys = ints(numVertices);
+			colours = ints(numVertices);
+			for (int v = 0; v < numVertices; v++) {
+				xs.put(v, graph.x(v));
+				ys.put(v, graph.y(v));
+				colours.put(v, graph.argb(v));
+			}
+			edgeSources = ints(numEdges);
+			edgeTargets = ints(numEdges);
+			edgeWeights = floats(numEdges);
+			for (int e = 0; e < numEdges; e++) {
+				edgeSources.put(e, graph.edgeSource(e));
+				edgeTargets.put(e, graph.edgeTarget(e));
+				edgeWeights.put(e, graph.edgeWeight(e));
+			}
+			offsets = ints(numVertices + 1);
+			for (int v = 0; v <= numVertices; v++) {
+				offsets.put(v, graph.offset(v));
+			}
+			targets = ints(2 * numEdges);
+			weights = floats(2 * numEdges);
+			incidentEdges = ints(2 * numEdges);
+			for (int slot = 0; slot < 2 * numEdges; slot++) {
+				targets.put(slot, graph.target(slot));
+				weights.put(slot, graph.weight(slot));
+				incidentEdges.put(slot, graph.edge(slot));
+			}
+		}
+	}
+
+	/**
+	 * Determines if the graph was closed
+	 *
+	 * @return true once {@link #close()} was called
+	 */
+	public boolean isClosed() {
+		return closed;
+	}
+
+	/**
+	 * Releases the buffers of the graph, closing a closed graph does nothing.
+	 * Afterwards the graph reports an IllegalStateException and the primitive
+	 * accessors an IndexOutOfBoundsException
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		xs = ys = colours = offsets = targets = incidentEdges = edgeSources = edgeTargets = CLOSED_INTS;
+		weights = edgeWeights = CLOSED_FLOATS;
+	}
+
+	/**
+	 * Checks that the graph is still open
+	 *
+	 * @throws IllegalStateException if the graph was closed
+	 */
+	private void checkOpen() throws IllegalStateException {
+		if (closed)
+			throw new IllegalStateException("The graph was closed");
+	}
+
+	@Override
+	public int x(int v) {
+		return xs.get(v);
+	}
+
+	@Override
+	public int y(int v) {
+		return ys.get(v);
+	}
+
+	@Override
+	public int argb(int v) {
+		return colours.get(v);
+	}
+
+	@Override
+	public int offset(int v) {
+		return offsets.get(v);
+	}
+
+	@Override
+	public int target(int slot) {
+		return targets.get(slot);
+	}
+
+	@Override
+	public float weight(int slot) {
+		return weights.get(slot);
+	}
+
+	@Override
+	public int edge(int slot) {
+		return incidentEdges.get(slot);
+	}
+
+	@Override
+	public int edgeSource(int e) {
+		return edgeSources.get(e);
+	}
+
+	@Override
+	public int edgeTarget(int e) {
+		return edgeTargets.get(e);
+	}
+
+	@Override
+	public float edgeWeight(int e) {
+		return edgeWeights.get(e);
+	}
+
+	@Override
+	public int numVertices() throws IllegalStateException {
+		checkOpen();
+		return numVertices;
+	}
+
+	@Override
+	public int numEdges() throws IllegalStateException {
+		checkOpen();
+		return numEdges;
+	}
+
+}
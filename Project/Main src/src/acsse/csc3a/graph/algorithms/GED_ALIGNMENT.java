@@ -0,0 +1,23 @@
+package acsse.csc3a.graph.algorithms;
+
+/**
+ * Specifies how {@link GraphEditDistance} pairs the vertices and edges of the
+ * two graphs it compares
+ */
+public enum GED_ALIGNMENT {
+	/**
+	 * The vertices and edges are paired in the order the graphs iterate them. The
+	 * pairs only correspond to the same part of both images when the images have
+	 * the same dimensions and region size
+	 */
+	SEQUENTIAL,
+	/**
+	 * Both region grids are mapped onto a common grid, as fine as the coarser of
+	 * the two, through their coordinates scaled by the size of the grid. Each
+	 * common cell pairs the regions it falls on in both images, and the edges
+	 * that join those regions to their left and upper neighbours. O(V) over flat
+	 * arrays, one grid row at a time, and meaningful between images of different
+	 * dimensions and region sizes
+	 */
+	SPATIAL
+}
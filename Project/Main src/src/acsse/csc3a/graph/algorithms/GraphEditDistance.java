@@ -1,7 +1,10 @@
 package acsse.csc3a.graph.algorithms;
 
+import java.util.Arrays;
 import java.util.Iterator;
+import acsse.csc3a.graph.AbstractCSRGraph;
 import acsse.csc3a.graph.Edge;
+import acsse.csc3a.graph.Graph;
 import acsse.csc3a.graph.Vertex;
 import acsse.csc3a.imagegraph.ImageGraph;
 import acsse.csc3a.imagegraph.Point;
@@ -48,6 +51,22 @@ public class GraphEditDistance {
 	 */
 	private static final float MAXIMUM_POSSIBLE_GED = 10_000_000;
 
+	/**
+	 * The number of vertices or edges compared between two checks of the cutoff
+	 */
+	public static final int CUTOFF_CHECK_INTERVAL = 1024;
+
+	/**
+	 * How the vertices and edges of the two graphs are paired
+	 */
+	private final GED_ALIGNMENT alignment;
+
+	/**
+	 * The grid of the last graph compared in the spatial alignment as graphA,
+	 * usually the input image compared against every reference
+	 */
+	private volatile CellGrid queryGrid;
+
 	/**
 	 * Constructs a GraphEditDistance with different cost weightings depending on
 	 * the task being performed Which tailors the algorithms to task-specific
@@ -56,6 +75,18 @@ public class GraphEditDistance {
 	 * @param algorithmType
 	 */
 	public GraphEditDistance(ALGORITHM algorithmType) {
+		this(algorithmType, GED_ALIGNMENT.SEQUENTIAL);
+	}
+
+	/**
+	 * Constructs a GraphEditDistance with the cost weightings of the task being
+	 * performed and the given way of pairing the vertices and edges
+	 * 
+	 * @param algorithmType the task being performed
+	 * @param alignment     how the vertices and edges of the graphs are paired
+	 */
+	public GraphEditDistance(ALGORITHM algorithmType, GED_ALIGNMENT alignment) {
+		this.alignment = alignment;
 
 		if (algorithmType == ALGORITHM.CLASSIFY)
 			ClassifyMode();
@@ -97,19 +128,64 @@ public class GraphEditDistance {
 	 * @return the value of the edit distance
 	 */
 	public float calculateGraphEditDistance(ImageGraph graphA, ImageGraph graphB) {
+		return calculateGraphEditDistance(graphA, graphB, Float.POSITIVE_INFINITY);
+	}
+
+	/**
+	 * Calculates the edit distance like
+	 * {@link #calculateGraphEditDistance(ImageGraph, ImageGraph)}, but gives up
+	 * once the distance is known to be larger than the cutoff. Every cost is
+	 * positive, so the size differences alone and the costs summed so far are a
+	 * lower bound of the distance, the bound is checked before the graphs are
+	 * walked and every {@link #CUTOFF_CHECK_INTERVAL} vertices or edges after that
+	 * 
+	 * @param graphA the graph being queried
+	 * @param graphB the graph being compared with
+	 * @param cutoff the largest distance of interest
+	 * @return the value of the edit distance if it is at most the cutoff,
+	 *         otherwise a lower bound of the distance that is larger than the
+	 *         cutoff
+	 */
+	public float calculateGraphEditDistance(ImageGraph graphA, ImageGraph graphB, float cutoff) {
+		if (alignment == GED_ALIGNMENT.SPATIAL)
+			return spatialEditDistance(graphA, graphB, cutoff);
+
 		float editDistance = 0.0f;
 
+		/*
+		 * the cost of the vertices and edges that graphB does not have, or extra ones
+		 * that graphB has that graphA does not have. They are added in the same order
+		 * as always, but are known up front and bound the distance from below
+		 */
+		final float vertexSizeCost = VERTEX_INSERTION_DELETION_COST
+				* Math.abs(graphA.getVerticies().size() - graphB.getVerticies().size());
+		final float edgeSizeCost = EDGE_INSERTION_DELETION_COST
+				* Math.abs(graphA.getGraph().numEdges() - graphB.getGraph().numEdges());
+
+		// float addition never decreases a sum of positive costs, so this is a true bound
+		float bound = normalize(editDistance + vertexSizeCost + edgeSizeCost);
+		if (bound > cutoff)
+			return bound;
+
 		// Vertex matching, matching vertices from graphA to graphB to compute costs
 		Iterator<Vertex<Point>> graphAVertices = graphA.getGraph().vertices().iterator();
 		// sort graph b vertices and edges to compare
 		Iterator<Vertex<Point>> graphBVertices = graphB.getGraph().vertices().iterator();
 
 		// Iterate through both to calculate vertex substitution cost
+		int count = 0;
 		while (graphAVertices.hasNext() && graphBVertices.hasNext()) {
 			Point graphAPoint = graphAVertices.next().getElement();
 			Point graphBPoint = graphBVertices.next().getElement();
 
 			editDistance += vertexSubstitutionCost(graphAPoint, graphBPoint);
+
+			if (++count == CUTOFF_CHECK_INTERVAL) {
+				count = 0;
+				bound = normalize(editDistance + vertexSizeCost + edgeSizeCost);
+				if (bound > cutoff)
+					return bound;
+			}
 		}
 
 		/*
@@ -117,19 +193,26 @@ public class GraphEditDistance {
 		 * vertices that graphB has that graphA does not have They would need to be
 		 * inserted or deleted from graphA
 		 */
-		editDistance += VERTEX_INSERTION_DELETION_COST
-				* Math.abs(graphA.getVerticies().size() - graphB.getVerticies().size());
+		editDistance += vertexSizeCost;
 
 		// 2. Edge matching, matching edges from graphA to graphB to compute costs
 		Iterator<Edge<Float>> graphAEdges = graphA.getGraph().edges().iterator();
 
 		Iterator<Edge<Float>> graphBEdges = graphB.getGraph().edges().iterator();
 
+		count = 0;
 		while (graphAEdges.hasNext() && graphBEdges.hasNext()) {
 			Float graphAWeight = graphAEdges.next().getElement();
 			Float graphBWeight = graphBEdges.next().getElement();
 
 			editDistance += edgeSubstitutionCost(graphAWeight, graphBWeight);
+
+			if (++count == CUTOFF_CHECK_INTERVAL) {
+				count = 0;
+				bound = normalize(editDistance + edgeSizeCost);
+				if (bound > cutoff)
+					return bound;
+			}
 		}
 
 		/*
@@ -137,15 +220,213 @@ public class GraphEditDistance {
 		 * that graphB has that graphA does not have They would need to be inserted or
 		 * deleted from graphA
 		 */
-		editDistance += EDGE_INSERTION_DELETION_COST
-				* Math.abs(graphA.getGraph().numEdges() - graphB.getGraph().numEdges());
+		editDistance += edgeSizeCost;
+
+		return normalize(editDistance);
+	}
+
+	/**
+	 * Calculates the edit distance with the vertices paired by their position on
+	 * a common grid (see {@link GED_ALIGNMENT#SPATIAL}). The differences in vertex
+	 * and edge counts are costed as in the sequential alignment and bound the
+	 * distance from below, the grid is then compared a row at a time and the
+	 * cutoff is checked after every row
+	 * 
+	 * @param graphA the graph being queried
+	 * @param graphB the graph being compared with
+	 * @param cutoff the largest distance of interest
+	 * @return the value of the edit distance if it is at most the cutoff,
+	 *         otherwise a lower bound of the distance that is larger than the
+	 *         cutoff
+	 */
+	private float spatialEditDistance(ImageGraph graphA, ImageGraph graphB, float cutoff) {
+		CellGrid gridA = queryGrid;
+		if (gridA == null || gridA.source != graphA) {
+			gridA = new CellGrid(graphA);
+			queryGrid = gridA;
+		}
+		CellGrid gridB = new CellGrid(graphB);
+
+		float editDistance = VERTEX_INSERTION_DELETION_COST * Math.abs(gridA.numVertices - gridB.numVertices)
+				+ EDGE_INSERTION_DELETION_COST * Math.abs(gridA.numEdges - gridB.numEdges);
+		float bound = normalize(editDistance);
+		if (bound > cutoff)
+			return bound;
+
+		// the common grid is as fine as the coarser of the two grids
+		final int width = Math.min(gridA.width, gridB.width);
+		final int height = Math.min(gridA.height, gridB.height);
+		final int[] columnsA = CellGrid.sample(gridA.width, width);
+		final int[] columnsB = CellGrid.sample(gridB.width, width);
+		final int[] rowsA = CellGrid.sample(gridA.height, height);
+		final int[] rowsB = CellGrid.sample(gridB.height, height);
+
+		for (int y = 0; y < height; y++) {
+			final int rowA = rowsA[y] * gridA.width;
+			final int rowB = rowsB[y] * gridB.width;
+			float rowCost = 0;
+
+			for (int x = 0; x < width; x++) {
+				final int a = rowA + columnsA[x];
+				final int b = rowB + columnsB[x];
+
+				float colourDifference = Point.colorDifference(gridA.colours[a], gridB.colours[b]);
+				rowCost += colourDifference * (gridA.water[a] && gridB.water[b] ? VERTEX_SUBSTITUTION_COST
+						: VERTEX_SUBSTITUTION_COST_NA);
+				rowCost += alignedEdgeCost(gridA.left[a], gridB.left[b]) + alignedEdgeCost(gridA.up[a], gridB.up[b]);
+			}
+
+			editDistance += rowCost;
+			bound = normalize(editDistance);
+			if (bound > cutoff)
+				return bound;
+		}
+
+		return normalize(editDistance);
+	}
+
+	/**
+	 * Determines the cost of a pair of aligned edges, either of which may be
+	 * missing
+	 * 
+	 * @param edgeWeightA the weight of the edge in graphA, NaN if there is none
+	 * @param edgeWeightB the weight of the edge in graphB, NaN if there is none
+	 * @return the substitution cost when both exist, the insertion or deletion
+	 *         cost when one exists, 0 otherwise
+	 */
+	private float alignedEdgeCost(float edgeWeightA, float edgeWeightB) {
+		boolean hasA = !Float.isNaN(edgeWeightA);
+		boolean hasB = !Float.isNaN(edgeWeightB);
+		if (hasA && hasB)
+			return Math.abs(edgeWeightA - edgeWeightB) * EDGE_SUBSTITUTION_COST;
+		return hasA || hasB ? EDGE_INSERTION_DELETION_COST : 0;
+	}
+
+	/**
+	 * The region grid of an image graph in flat arrays indexed by grid position,
+	 * the colour and water flag of every region and the weights of the edges to
+	 * its left and upper neighbours
+	 */
+	private static final class CellGrid {
+		private final ImageGraph source;
+		private final int width, height;
+		private final int numVertices, numEdges;
+		private final int[] colours;
+		private final boolean[] water;
 
 		/*
-		 * linear scaling/ linear normalization which maps the values from one range (0
-		 * to 10 000 000) to another range (0 to 1000) while maintaining the relative
-		 * proportion if GED exceeds MAXIMUM_POSSIBLE_GED(10 000 000) (1000) then the
-		 * distance is unreasonable
+		 * NaN where the region has no edge in that direction
 		 */
+		private final float[] left, up;
+
+		/**
+		 * Lays out the regions of an image graph on its grid
+		 * 
+		 * @param imageGraph the image graph
+		 */
+		CellGrid(ImageGraph imageGraph) {
+			final int regionSize = imageGraph.getPixelRegionSize();
+			final Graph<Point, Float> graph = imageGraph.getGraph();
+			source = imageGraph;
+			width = (imageGraph.getWidth() + regionSize - 1) / regionSize;
+			height = (imageGraph.getHeight() + regionSize - 1) / regionSize;
+			numVertices = graph.numVertices();
+			numEdges = graph.numEdges();
+
+			colours = new int[width * height];
+			water = new boolean[width * height];
+			left = new float[width * height];
+			up = new float[width * height];
+			Arrays.fill(left, Float.NaN);
+			Arrays.fill(up, Float.NaN);
+
+			if (graph instanceof AbstractCSRGraph && numVertices == width * height) {
+				// the vertex ids of an image graph are its grid positions
+				AbstractCSRGraph csr = (AbstractCSRGraph) graph;
+				for (int v = 0; v < numVertices; v++) {
+					colours[v] = csr.argb(v);
+				}
+				for (int e = 0; e < numEdges; e++) {
+					place(csr.edgeSource(e), csr.edgeTarget(e), csr.edgeWeight(e));
+				}
+			} else {
+				for (Vertex<Point> v : graph.vertices()) {
+					int cell = cell(v.getElement(), regionSize);
+					if (cell >= 0)
+						colours[cell] = v.getElement().getARGB();
+				}
+				for (Edge<Float> e : graph.edges()) {
+					Vertex<Point>[] ends = graph.endVertices(e);
+					int a = cell(ends[0].getElement(), regionSize);
+					int b = cell(ends[1].getElement(), regionSize);
+					if (a >= 0 && b >= 0)
+						place(a, b, e.getElement());
+				}
+			}
+
+			for (int i = 0; i < colours.length; i++) {
+				water[i] = Point.isLikelyWater(colours[i]);
+			}
+		}
+
+		/**
+		 * Finds the grid position of the region centred on a point
+		 * 
+		 * @param p          the centre of the region
+		 * @param regionSize the size of a region
+		 * @return the grid position, or -1 if the point is not on the grid
+		 */
+		private int cell(Point p, int regionSize) {
+			int gridX = (p.getX() - regionSize / 2) / regionSize;
+			int gridY = (p.getY() - regionSize / 2) / regionSize;
+			if (gridX < 0 || gridY < 0 || gridX >= width || gridY >= height)
+				return -1;
+			return gridY * width + gridX;
+		}
+
+		/**
+		 * Records an edge with the later of its two regions, as the edge to that
+		 * region's left or upper neighbour
+		 * 
+		 * @param a      the grid position of one end
+		 * @param b      the grid position of the other end
+		 * @param weight the weight of the edge
+		 */
+		private void place(int a, int b, float weight) {
+			int later = Math.max(a, b);
+			if (later / width == Math.min(a, b) / width)
+				left[later] = weight;
+			else
+				up[later] = weight;
+		}
+
+		/**
+		 * Maps the cells of a common axis onto the cells of a grid axis, each common
+		 * cell takes the grid cell under its centre
+		 * 
+		 * @param cells  the number of cells along the grid axis
+		 * @param common the number of cells along the common axis, at most cells
+		 * @return the grid cell of every common cell
+		 */
+		static int[] sample(int cells, int common) {
+			int[] map = new int[common];
+			for (int i = 0; i < common; i++) {
+				map[i] = (int) ((2L * i + 1) * cells / (2L * common));
+			}
+			return map;
+		}
+	}
+
+	/**
+	 * linear scaling/ linear normalization which maps the values from one range (0
+	 * to 10 000 000) to another range (0 to 1000) while maintaining the relative
+	 * proportion if GED exceeds MAXIMUM_POSSIBLE_GED(10 000 000) (1000) then the
+	 * distance is unreasonable
+	 * 
+	 * @param editDistance the summed costs
+	 * @return the normalised distance
+	 */
+	private static float normalize(float editDistance) {
 		return (editDistance / MAXIMUM_POSSIBLE_GED) * 1000;
 	}
 
@@ -157,7 +438,7 @@ public class GraphEditDistance {
 	 * @return a float value representing similarity/ dissimilarity
 	 */
 	private float vertexSubstitutionCost(Point vertexA, Point vertexB) {
-		float colourDifference = Point.colorDifference(vertexA.getColour(), vertexB.getColour());
+		float colourDifference = Point.colorDifference(vertexA.getARGB(), vertexB.getARGB());
 		
 		if (vertexA.isLikelyWater() && vertexB.isLikelyWater()) {
 			// if both are likely water let the cost be less
@@ -0,0 +1,23 @@
+package acsse.csc3a.graph.algorithms;
+
+/**
+ * Specifies the priority queue {@link Prims_MST} uses to pick the next vertex
+ */
+public enum MST_ENGINE {
+	/**
+	 * An indexed binary heap, vertices are taken in exact order of distance,
+	 * O(E log V)
+	 */
+	HEAP,
+	/**
+	 * A bucket queue over the bounded range of the edge weights, O(E + W) where W
+	 * is the number of buckets. Distances are only ordered to within
+	 * {@link Prims_MST#BUCKET_WIDTH}, so every MST edge is at most one bucket
+	 * width heavier than the edge the heap would pick at that step, and the MST
+	 * weight is at most edgeCount * BUCKET_WIDTH above the exact MST weight. The
+	 * edge count is exact. The total weight also counts every improving edge,
+	 * which depends on the order vertices are taken in, so it differs from the
+	 * heap engine by about as much as the heap differs between tie breaks
+	 */
+	BUCKET
+}
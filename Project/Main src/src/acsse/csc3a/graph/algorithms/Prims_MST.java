@@ -1,17 +1,18 @@
 package acsse.csc3a.graph.algorithms;
 
 
-import java.util.List;
+import java.util.Arrays;
+
+import acsse.csc3a.graph.AbstractCSRGraph;
 import acsse.csc3a.graph.Edge;
 import acsse.csc3a.graph.Graph;
+import acsse.csc3a.graph.IndexedGraph;
 import acsse.csc3a.graph.Vertex;
-import acsse.csc3a.lists.ArrayList;
-import acsse.csc3a.lists.LinkedPositionalList;
-import acsse.csc3a.lists.PositionalList;
 import acsse.csc3a.map.AdjacencyMap;
 import acsse.csc3a.map.Map;
-import acsse.csc3a.priorityQueue.HeapPriorityQueue;
-import acsse.csc3a.priorityQueue.PriorityQueue;
+import acsse.csc3a.priorityQueue.BucketQueue;
+import acsse.csc3a.priorityQueue.IndexedMinHeap;
+import acsse.csc3a.priorityQueue.IndexedPriorityQueue;
 
 /**
  * A class that calculates the MST of a graph as assigns the respective features to it
@@ -19,17 +20,48 @@ import acsse.csc3a.priorityQueue.PriorityQueue;
  */
 public class Prims_MST<V> {
 
+	/**
+	 * the width of a bucket of the {@link MST_ENGINE#BUCKET} engine, the
+	 * precision to which distances are ordered
+	 */
+	public static final float BUCKET_WIDTH = 1f / 16;
+
+	private final MST_ENGINE engine;
+
+	/**
+	 * Creates an MST calculator that uses the exact heap engine
+	 */
+	public Prims_MST() {
+		this(MST_ENGINE.HEAP);
+	}
+
+	/**
+	 * Creates an MST calculator that uses the given engine by default
+	 * @param engine the priority queue used to pick the next vertex
+	 */
+	public Prims_MST(MST_ENGINE engine) {
+		this.engine = engine;
+	}
+
 	/**
 	 * This method creates a MSTFeatures class object to store the extracted features
 	 * @param graph the graph being queried
 	 * @return the MTSFeature vector
 	 */
 	public MSTFeatures CalcMST(Graph<V, Float> graph) {
+		return CalcMST(graph, engine);
+	}
 
-		float Total_Weight = 0;
+	/**
+	 * This method creates a MSTFeatures class object to store the extracted
+	 * features, using the given engine for this call
+	 * @param graph  the graph being queried
+	 * @param engine the priority queue used to pick the next vertex
+	 * @return the MTSFeature vector
+	 */
+	public MSTFeatures CalcMST(Graph<V, Float> graph, MST_ENGINE engine) {
 
 		MSTFeatures features = new MSTFeatures();
-		features.degreeMap = new AdjacencyMap<>();
 
 		// Check if graph is empty
 		if (graph.vertices() == null || !graph.vertices().iterator().hasNext()) {
@@ -40,90 +72,193 @@ public class Prims_MST<V> {
 			return features;
 		}
 
-		PositionalList<Edge<Float>> mst = new LinkedPositionalList<>();
+		// image graphs are walked through their primitive arrays
+		PrimState state = graph instanceof AbstractCSRGraph ? csrMST((AbstractCSRGraph) graph, engine) : indexedMST(graph, engine);
 
-		// Get first vertex as starting point
-		Vertex<V> start = graph.vertices().iterator().next();
+		features.totalWeight = state.totalWeight;
+		features.edgeCount = state.edgeCount;
+		features.averageWeight = features.edgeCount > 0 ? state.totalWeight / features.edgeCount : 0f;
 
-		// Initialize data structures
-		PriorityQueue<Float, Vertex<V>> pq = new HeapPriorityQueue<>();
-		Map<Vertex<V>, Float> distance = new AdjacencyMap<>();
-		Map<Vertex<V>, Edge<Float>> connect = new AdjacencyMap<>();
-		Map<Vertex<V>, Boolean> inMST = new AdjacencyMap<>();
-		List<Float> edgeWeights = new ArrayList<>();
-
-		// Initialize all vertices
-		for (Vertex<V> v : graph.vertices()) {
-			float dist = v.equals(start) ? 0 : Integer.MAX_VALUE;
-			distance.put(v, dist);
-			pq.insert(dist, v);
+		// Variance
+		float variance = 0f;
+		for (int i = 0; i < state.edgeCount; i++) {
+			float diff = state.edgeWeights[i] - features.averageWeight;
+			variance += diff * diff;
 		}
+		features.variance = features.edgeCount > 0 ? variance / features.edgeCount : 0f;
 
-		while (!pq.isEmpty()) {
-			// Get vertex with minimum distance
-			Vertex<V> u = pq.removeMin().getValue();
-			// Skip if already in MST
-			if (inMST.get(u) != null) {
-				continue;
+		System.out.println("MST contains " + state.edgeCount + " edges with total weight: "+ state.totalWeight + " edge count: " + features.edgeCount);
+
+		features.degreeMap = null;
+		return features;
+	}
+
+	/**
+	 * Runs Prim's algorithm over a CSR graph, reading the neighbours and weights
+	 * of every vertex straight from its adjacency arrays
+	 * @param graph  the graph being queried
+	 * @param engine the priority queue used to pick the next vertex
+	 * @return the finished search
+	 */
+	private PrimState csrMST(AbstractCSRGraph graph, MST_ENGINE engine) {
+		IndexedPriorityQueue queue;
+		if (engine == MST_ENGINE.BUCKET) {
+			float maxWeight = 0;
+			for (int e = 0; e < graph.numEdges(); e++) {
+				maxWeight = Math.max(maxWeight, graph.edgeWeight(e));
 			}
+			queue = new BucketQueue(graph.numVertices(), maxWeight, 1 / BUCKET_WIDTH);
+		} else {
+			queue = new IndexedMinHeap(graph.numVertices());
+		}
 
-			// Add to MST
-			inMST.put(u, true);
+		// the first vertex is the starting point
+		PrimState state = new PrimState(queue, graph.numVertices(), 0);
 
-			// Add connecting edge if not the first vertex
-			Edge<Float> connectingEdge = connect.get(u);
-			if (connectingEdge != null) {
-				mst.addLast(connectingEdge);
-
-				float weight = connectingEdge.getElement();
-				Total_Weight += weight;
-				edgeWeights.add(weight);
-
-				// Update degree map
-				Vertex<V>[] endpoints = graph.endVertices(connectingEdge);
-				for (Vertex<V> endpoint : endpoints) {
-					int deg = features.degreeMap.get(endpoint) != null ? features.degreeMap.get(endpoint) : 0;
-					features.degreeMap.put(endpoint, deg + 1);
-				}
+		while (!state.queue.isEmpty()) {
+			// Get vertex with minimum distance and add it to the MST
+			int u = state.next();
+
+			// Process all edges
+			for (int slot = graph.offset(u); slot < graph.offset(u + 1); slot++) {
+				state.relax(u, graph.target(slot), graph.weight(slot));
 			}
+		}
+
+		return state;
+	}
+
+	/**
+	 * Runs Prim's algorithm over any graph, the vertices are numbered by the
+	 * graph itself when it is an {@link IndexedGraph}, otherwise by a temporary
+	 * index map built once
+	 * @param graph  the graph being queried
+	 * @param engine the priority queue used to pick the next vertex
+	 * @return the finished search
+	 */
+	@SuppressWarnings("unchecked")
+	private PrimState indexedMST(Graph<V, Float> graph, MST_ENGINE engine) {
+		final int n = graph.numVertices();
+		final IndexedGraph<V, Float> indexed = graph instanceof IndexedGraph ? (IndexedGraph<V, Float>) graph : null;
+
+		Vertex<V>[] vertices = null;
+		Map<Vertex<V>, Integer> indices = null;
+		if (indexed == null) {
+			vertices = (Vertex<V>[]) new Vertex<?>[n];
+			indices = new AdjacencyMap<>(n);
+			int i = 0;
+			for (Vertex<V> v : graph.vertices()) {
+				vertices[i] = v;
+				indices.put(v, i++);
+			}
+		}
+
+		IndexedPriorityQueue queue;
+		if (engine == MST_ENGINE.BUCKET) {
+			float maxWeight = 0;
+			for (Edge<Float> e : graph.edges()) {
+				maxWeight = Math.max(maxWeight, e.getElement());
+			}
+			queue = new BucketQueue(n, maxWeight, 1 / BUCKET_WIDTH);
+		} else {
+			queue = new IndexedMinHeap(n);
+		}
+
+		// Get first vertex as starting point
+		Vertex<V> start = graph.vertices().iterator().next();
+		PrimState state = new PrimState(queue, n, indexed != null ? indexed.vertexIndex(start) : indices.get(start));
+
+		while (!state.queue.isEmpty()) {
+			// Get vertex with minimum distance and add it to the MST
+			int u = state.next();
+			Vertex<V> uVertex = indexed != null ? indexed.vertexAt(u) : vertices[u];
 
 			// Process all edges
-			for (Edge<Float> e : graph.allEdges(u)) {
+			for (Edge<Float> e : graph.allEdges(uVertex)) {
 				try {
-					Vertex<V> v = graph.opposite(u, e);
-
-					// If v not in MST and edge weight is better
-					if (inMST.get(v) == null && distance.get(v) != null) {
-						float weight = e.getElement();
-						if (weight < distance.get(v)) {
-							distance.put(v, weight);
-							connect.put(v, e);
-							pq.insert(weight, v);
-							Total_Weight += weight;
-						}
-					}
+					Vertex<V> v = graph.opposite(uVertex, e);
+					state.relax(u, indexed != null ? indexed.vertexIndex(v) : indices.get(v), e.getElement());
 				} catch (IllegalArgumentException ex) {
 					System.err.println("Invalid edge endpoint: " + ex.getMessage());
 				}
 			}
 		}
 
-		features.totalWeight = Total_Weight;
-		features.edgeCount = edgeWeights.size();
-		features.averageWeight = features.edgeCount > 0 ? Total_Weight / features.edgeCount : 0f;
+		return state;
+	}
 
-		// Variance
-		float variance = 0f;
-		for (Float w : edgeWeights) {
-			float diff = w - features.averageWeight;
-			variance += diff * diff;
+	/**
+	 * The vertex indexed state of a run of Prim's algorithm. Every vertex sits in
+	 * the queue exactly once and improving edges lower its key in place
+	 */
+	private static final class PrimState {
+		final IndexedPriorityQueue queue;
+		final float[] distance;
+		// the vertex each vertex joined the MST through, -1 for a starting vertex
+		final int[] connect;
+		final boolean[] inMST;
+		// weights of the MST edges in the order they were added
+		final float[] edgeWeights;
+		int edgeCount = 0;
+		float totalWeight = 0;
+
+		/**
+		 * Initialises every vertex, the start at distance 0 and every other vertex at
+		 * infinity
+		 * @param queue an empty queue for n vertices
+		 * @param n     the number of vertices
+		 * @param start the index of the starting vertex
+		 */
+		PrimState(IndexedPriorityQueue queue, int n, int start) {
+			this.queue = queue;
+			distance = new float[n];
+			connect = new int[n];
+			inMST = new boolean[n];
+			edgeWeights = new float[n];
+
+			Arrays.fill(connect, -1);
+			for (int v = 0; v < n; v++) {
+				distance[v] = v == start ? 0 : Integer.MAX_VALUE;
+				queue.insert(v, distance[v]);
+			}
 		}
-		features.variance = features.edgeCount > 0 ? variance / features.edgeCount : 0f;
 
-		System.out.println("MST contains " + mst.size() + " edges with total weight: "+ Total_Weight + " edge count: " + features.edgeCount);
-		
-		features.degreeMap = null;
-		return features;
+		/**
+		 * Removes the closest vertex from the queue and adds it, and the edge that
+		 * reached it, to the MST. Vertices that were never reached start a new tree of
+		 * the forest
+		 * @return the index of the vertex
+		 */
+		int next() {
+			int u = queue.removeMin();
+			inMST[u] = true;
+
+			// Add connecting edge if not the first vertex
+			if (connect[u] >= 0) {
+				float weight = distance[u];
+				totalWeight += weight;
+				edgeWeights[edgeCount++] = weight;
+			}
+			return u;
+		}
+
+		/**
+		 * Lowers the distance of v if the edge from u is better than the best edge
+		 * found so far. As in the original implementation, every improving edge also
+		 * counts towards the total weight
+		 * @param u      the vertex that was just added
+		 * @param v      the neighbour of u
+		 * @param weight the weight of the edge between them
+		 */
+		void relax(int u, int v, float weight) {
+			// If v not in MST and edge weight is better
+			if (!inMST[v] && weight < distance[v]) {
+				distance[v] = weight;
+				connect[v] = u;
+				queue.decreaseKey(v, weight);
+				totalWeight += weight;
+			}
+		}
 	}
 
-}
\ No newline at end of file
+}
@@ -1,9 +1,12 @@
 package acsse.csc3a.graph.algorithms;
 
 import java.io.IOException;
-import java.util.Collections;
-import java.util.Iterator;
+import java.io.UncheckedIOException;
 import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.BiConsumer;
 
 import acsse.csc3a.analyser.ImageAnalyser;
@@ -12,16 +15,51 @@ import acsse.csc3a.imagegraph.AbstractImageGraphProxy;
 import acsse.csc3a.imagegraph.ImageGraph;
 import acsse.csc3a.imagegraph.Point;
 import acsse.csc3a.io.ImageIterator;
-import acsse.csc3a.lists.ArrayList;
-import acsse.csc3a.map.AdjacencyMap;
-import acsse.csc3a.map.Map;
+import acsse.csc3a.priorityQueue.TopKSelector;
 
 public class kNearestNeighbor {
 
+	/**
+	 * the number of reference graphs a match keeps alive at the same time when no
+	 * budget is given, a full size reference graph holds a few hundred megabytes
+	 */
+	public static final int DEFAULT_MAX_LIVE_GRAPHS = 2;
+
 	private BiConsumer<Double, Double> updateProgress;
+	private final ForkJoinPool pool;
+	private final int maxLiveGraphs;
 
+	/**
+	 * Creates a classifier that evaluates reference graphs on the common
+	 * ForkJoinPool, with the default budget of live reference graphs
+	 * 
+	 * @param updateProgress receives the progress and the total progress
+	 */
 	public kNearestNeighbor(BiConsumer<Double, Double> updateProgress) {
+		this(updateProgress, ForkJoinPool.commonPool(), DEFAULT_MAX_LIVE_GRAPHS);
+	}
+
+	/**
+	 * Creates a classifier that evaluates reference graphs on the given pool
+	 * 
+	 * @param updateProgress receives the progress and the total progress, it may
+	 *                       be called from the threads of the pool
+	 * @param pool           the pool the reference graphs are built and compared
+	 *                       on
+	 * @param maxLiveGraphs  the largest number of reference graphs a match keeps
+	 *                       alive at the same time, 1 evaluates one reference at
+	 *                       a time. Graphs kept by the
+	 *                       {@link acsse.csc3a.imagegraph.ImageGraphCache} are
+	 *                       bounded by its own budget and not by this one
+	 * @throws IllegalArgumentException when the budget is less than 1
+	 */
+	public kNearestNeighbor(BiConsumer<Double, Double> updateProgress, ForkJoinPool pool, int maxLiveGraphs)
+			throws IllegalArgumentException {
+		if (maxLiveGraphs < 1)
+			throw new IllegalArgumentException("Invalid live graph budget: " + maxLiveGraphs);
 		this.updateProgress = updateProgress;
+		this.pool = pool;
+		this.maxLiveGraphs = maxLiveGraphs;
 	}
 
 	/**
@@ -71,14 +109,14 @@ public class kNearestNeighbor {
 			throw new IllegalArgumentException("Invalid input parameters");
 		}
 
-		// create a list to store msst features
-		List<KClass<CATEGORY_TYPE, Distance>> classificationList = new ArrayList<>();
-
 		// use Prim's MST to calculate the MST for the new graph image
 		Prims_MST<Point> MST = new Prims_MST<>();
 		inputGraph.setFeatures(MST.CalcMST(inputGraph.getGraph()));
 		inputGraph.getFeatures().normalize();
 
+		// keep only the K nearest references while the features are read
+		TopKSelector<KClass<CATEGORY_TYPE, Distance>> nearest = new TopKSelector<>(K);
+
 		System.out.println("kclasses");
 		/*
 		 * calculate the distance between the mst features of the reference graphs and
@@ -90,7 +128,7 @@ public class kNearestNeighbor {
 				Distance distance = MSTFeatures.calculateDistance(inputGraph.getFeatures(), currentFeature, true);
 				KClass<CATEGORY_TYPE, Distance> kClass = new KClass<>(currentFeature.category_TYPE, distance);
 
-				classificationList.addLast(kClass);
+				nearest.offer(kClass);
 
 				System.out.println(kClass);
 
@@ -100,30 +138,22 @@ public class kNearestNeighbor {
 		referenceGraphs.close();
 
 		System.out.println("k of them....");
-		// sort the classified list
-		Collections.sort(classificationList);
+		// the first K elements of the sorted classified list
+		List<KClass<CATEGORY_TYPE, Distance>> classificationList = nearest.toSortedList();
 
 		/*
-		 * get the first k element in the classified list(check that K is not more than
-		 * the size of the classification list)
+		 * the frequency of occurrences of every label, indexed by ordinal, a label
+		 * without votes keeps 0
 		 */
-		classificationList = classificationList.subList(0, Math.min(K, classificationList.size()));
-
-		// create a map that will store the label and the frequency of occurrences
-		Map<CATEGORY_TYPE, Integer> frequencyMap = new AdjacencyMap<>();
+		int[] frequencies = new int[CATEGORY_TYPE.values().length];
 
 		// add the labels and the votes
 		for (KClass<CATEGORY_TYPE, Distance> kClass : classificationList) {
-			Integer currentFrequency = frequencyMap.get(kClass.label);
+			int label = kClass.label.ordinal();
 			System.out.println("label: " + kClass.label);
 			System.out.println("distance: app(" + kClass.distance.d_appear + ") str(" + kClass.distance.d_struct + ")");
 
-			// if it is a new entry
-			if (currentFrequency == null) {
-				frequencyMap.put(kClass.label, 1);
-			} else {
-				frequencyMap.put(kClass.label, ++currentFrequency);
-			}
+			frequencies[label]++;
 		}
 
 		/*
@@ -131,13 +161,11 @@ public class kNearestNeighbor {
 		 * from top view
 		 */
 		CATEGORY_TYPE bestMatch = CATEGORY_TYPE.ONLY_WATER_TOP_VIEW;
-		int highestFrequency = Integer.MIN_VALUE;
+		int highestFrequency = 0;
 
-		Iterator<CATEGORY_TYPE> iterator = frequencyMap.keySet().iterator();
-		// iterate through all keys and find the one with the highest frequency
-		while (iterator.hasNext()) {
-			CATEGORY_TYPE currentMatch = iterator.next();
-			int currentFrequency = frequencyMap.get(currentMatch);
+		// iterate through all labels and find the one with the highest frequency, a label without votes never wins
+		for (CATEGORY_TYPE currentMatch : CATEGORY_TYPE.values()) {
+			int currentFrequency = frequencies[currentMatch.ordinal()];
 			if (currentFrequency > highestFrequency) {
 				highestFrequency = currentFrequency;
 				bestMatch = currentMatch;
@@ -154,7 +182,15 @@ public class kNearestNeighbor {
 	 * @apiNote This method also performs quick reject whereby If the feature
 	 *          distance is large, we can immediately reject that reference as “too
 	 *          different” without running full GED. This is don't by seeing if the
-	 *          mst fingerprint falls bellow the average mst feature average
+	 *          mst fingerprint falls bellow the average mst feature average. The
+	 *          references that are not rejected are decoded, built and compared
+	 *          concurrently on the pool of this classifier, with at most
+	 *          maxLiveGraphs reference images or graphs alive at once, and the
+	 *          votes are the same as when they are compared one by one. Rejected
+	 *          references are never decoded, and a reference whose image cannot be
+	 *          read is skipped with a warning. The first exception or
+	 *          error thrown by an evaluation is rethrown once every evaluation is
+	 *          done. This must not be called from a thread of that pool
 	 * @param inputGraph      the new graph being classified
 	 * @param referenceGraphs the reference graphs used to classify
 	 * @param K               the number of elements that will be left after this
@@ -169,8 +205,8 @@ public class kNearestNeighbor {
 			throw new IllegalArgumentException("Invalid input parameters");
 		}
 
-		// create a list to store the composite required to store similarity quantifiers
-		List<KClass<MATCH_TYPE, Double>> matchList = new ArrayList<>();
+		// keep only the K most similar references while they are evaluated
+		TopKSelector<KClass<MATCH_TYPE, Double>> nearest = new TopKSelector<>(K);
 
 		GraphEditDistance GED = new GraphEditDistance(ALGORITHM.MATCH);
 		Prims_MST<Point> mst = new Prims_MST<Point>();
@@ -187,19 +223,23 @@ public class kNearestNeighbor {
 		// calculate average distance
 		Distance averageDistance = MSTFeatures.calculateDistance(inputGraph.getFeatures(), avgFeatures, false);
 
-		double count = 0.00;
 		double numGraphs = (double) referenceGraphs.count();
+		Progress progress = new Progress(numGraphs);
 
 		/*
-		 * get GED of all graphs in loop and add them to a list of pairs that represent
-		 * the label and the GED
+		 * the references that pass the quick reject are decoded, built and compared
+		 * on the pool, each holds a permit while its image or graph is alive so no
+		 * more than maxLiveGraphs reference graphs exist at once. A result is offered with the
+		 * position of its reference so ties are broken as in a one by one evaluation
 		 */
-		while (referenceGraphs.hasNext()) {
+		Semaphore liveGraphs = new Semaphore(maxLiveGraphs);
+		AtomicReference<Throwable> failure = new AtomicReference<>();
+		int submitted = 0;
+
+		while (referenceGraphs.hasNext() && failure.get() == null) {
 			// get the current image graph proxy from the reference data set
 			AbstractImageGraphProxy proxy = referenceGraphs.next();
 
-			progress(++count, numGraphs);
-
 			// calculate the distance
 			Distance currentDistance = MSTFeatures.calculateDistance(inputGraph.getFeatures(), proxy.getFeatures(),
 					false);
@@ -209,54 +249,94 @@ public class kNearestNeighbor {
 			 * relevant graphs
 			 */
 			if (currentDistance.compareTo(averageDistance) != 1) {
-
-				// do resource heavy task of constructing ImageGraph
-				ImageGraph imageGraph = proxy.getGraph();
-
-				// calculate how different it is from the new image
-				double distance = GED.calculateGraphEditDistance(inputGraph, imageGraph);
-				// store the type of image and the difference
-				matchList.addLast(new KClass<MATCH_TYPE, Double>(imageGraph.getLabel(), distance));
-				// make the eligible for garbage collection
-				imageGraph = null;
-				System.gc();
+				final int position = submitted++;
+				liveGraphs.acquireUninterruptibly();
+				pool.execute(() -> {
+					try {
+						/*
+						 * do resource heavy task of decoding the image and constructing the
+						 * ImageGraph, inside the live graph budget
+						 */
+						ImageGraph imageGraph;
+						try {
+							imageGraph = proxy.getGraph();
+						} catch (UncheckedIOException e) {
+							// an unreadable reference is skipped instead of failing the match
+							System.out.println("Warning: Could not read image - " + proxy.getFile().getName());
+							return;
+						}
+
+						/*
+						 * a reference further away than the current K-th nearest cannot make it
+						 * into the K nearest, the threshold only ever decreases so the comparison
+						 * is abandoned once it is passed
+						 */
+						float cutoff = Float.POSITIVE_INFINITY;
+						synchronized (nearest) {
+							if (nearest.isFull())
+								cutoff = nearest.threshold().distance.floatValue();
+						}
+
+						// calculate how different it is from the new image
+						double distance = GED.calculateGraphEditDistance(inputGraph, imageGraph, cutoff);
+						if (distance <= cutoff) {
+							// store the type of image and the difference
+							KClass<MATCH_TYPE, Double> kClass = new KClass<>(imageGraph.getLabel(), distance);
+							synchronized (nearest) {
+								nearest.offer(kClass, position);
+							}
+						}
+					} catch (Throwable e) {
+						/*
+						 * errors are kept as well, an OutOfMemoryError would otherwise go to the
+						 * pool's handler and the match would quietly miss this reference
+						 */
+						failure.compareAndSet(null, e);
+					} finally {
+						// reported before the permit is returned, so none is reported after the match
+						progress.step();
+						liveGraphs.release();
+					}
+				});
+			} else {
+				progress.step();
 			}
 
 		}
 
+		// every evaluation holds a permit until it is done, so this waits for all of them
+		liveGraphs.acquireUninterruptibly(maxLiveGraphs);
+
 		// close all references in the stream and for call garbage collector
 		referenceGraphs.close();
 
-		// sort the list in ascending order (from biggest to smallest)
-		Collections.sort(matchList);
+		Throwable error = failure.get();
+		if (error instanceof RuntimeException)
+			throw (RuntimeException) error;
+		if (error instanceof Error)
+			throw (Error) error;
+		if (error != null)
+			throw new CompletionException(error);
 
-		/*
-		 * get only the first K pairs in the list (check that K is not more than the
-		 * size of the classification list)
-		 */
-		matchList = matchList.subList(0, Math.min(K, matchList.size()));
+		// the first K pairs in ascending order (from most to least similar)
+		List<KClass<MATCH_TYPE, Double>> matchList = nearest.toSortedList();
 
 		/*
-		 * create a map that will store the label and the frequency of occurrences and
-		 * the weight of occurrences the list
+		 * the weighted votes of every label, indexed by ordinal, a label without
+		 * votes keeps 0
 		 */
-		Map<MATCH_TYPE, Double> weightedVotes = new AdjacencyMap<>();
+		double[] weightedVotes = new double[MATCH_TYPE.values().length];
 
 		// add the labels and the votes
 		for (KClass<MATCH_TYPE, Double> kClass : matchList) {
-			Double currentVote = weightedVotes.get(kClass.label);
+			int label = kClass.label.ordinal();
 			/*
 			 * weight the frequency so, best matches hold twice as much weight when
 			 * weighting avoid division by zero
 			 */
 			double weight = 1.0 / (kClass.distance + Double.MIN_VALUE);
 
-			// if it is a new entry
-			if (currentVote == null) {
-				weightedVotes.put(kClass.label, weight);
-			} else {
-				weightedVotes.put(kClass.label, currentVote + weight);
-			}
+			weightedVotes[label] += weight;
 		}
 
 		/*
@@ -267,16 +347,15 @@ public class kNearestNeighbor {
 		double highestVote = Float.MIN_VALUE;
 
 		/* Find the label with the most occurrences and least distance (highest vote) */
-		Iterator<MATCH_TYPE> iterator = weightedVotes.keySet().iterator();
-		// iterate through all keys and find the one with the highest vote
-		while (iterator.hasNext()) {
-			MATCH_TYPE currentMatch = iterator.next();
-			double currentVote = weightedVotes.get(currentMatch);
+		// iterate through all labels and find the one with the highest vote, a label without votes never wins
+		for (MATCH_TYPE currentMatch : MATCH_TYPE.values()) {
+			double currentVote = weightedVotes[currentMatch.ordinal()];
 			if (currentVote > highestVote) {
 				highestVote = currentVote;
 				bestMatch = currentMatch;
 			}
 		}
+
 		return bestMatch;
 	}
 
@@ -286,6 +365,27 @@ public class kNearestNeighbor {
 		updateProgress.accept(progress, ImageAnalyser.TOTAL_PROGRESS);
 	}
 
+	/**
+	 * Counts the references of a match that are done, rejected or evaluated. The
+	 * references finish on several threads, so counting and reporting happen
+	 * together to keep the reported progress from going backwards
+	 */
+	private final class Progress {
+		private final double numGraphs;
+		private double count = 0.00;
+
+		Progress(double numGraphs) {
+			this.numGraphs = numGraphs;
+		}
+
+		/**
+		 * Records that one more reference is done and reports the progress
+		 */
+		synchronized void step() {
+			progress(++count, numGraphs);
+		}
+	}
+
 	/**
 	 * This method calculates the average MSTFeatures for this current category of
 	 * image graphs {@linkplain CATEGORY_TYPE}, used by {@link #classify()}
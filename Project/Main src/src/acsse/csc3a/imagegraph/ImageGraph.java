@@ -1,19 +1,28 @@
 package acsse.csc3a.imagegraph;
 
-import java.awt.Color;
 import java.awt.image.BufferedImage;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import acsse.csc3a.map.Map;
 import acsse.csc3a.graph.*;
 import acsse.csc3a.graph.algorithms.CATEGORY_TYPE;
 import acsse.csc3a.graph.algorithms.MATCH_TYPE;
 import acsse.csc3a.graph.algorithms.MSTFeatures;
-import acsse.csc3a.map.AbstractMap;
-import acsse.csc3a.map.AdjacencyMap;
+import acsse.csc3a.map.ReadOnlyMap;
 
 /**
  * A class that encapsulates attributes and behavior required for image graph
@@ -22,16 +31,30 @@ import acsse.csc3a.map.AdjacencyMap;
 public class ImageGraph implements Serializable, GraphFeatureSource {
 
 	transient private BufferedImage image;
-	transient private Graph<Point, Float> graph;
-	transient private Map<Point, Vertex<Point>> pixelVertices;
+	transient private ImageRaster raster;
+	transient private IntegralImage integralImage;
+	transient private AbstractCSRGraph graph;
 	private MSTFeatures features;
 	private MATCH_TYPE label;
 	private CATEGORY_TYPE waterImageType;
 	private int pixelRegionSize;
+	private int width, height;
 	private static float EDGE_THRESHOLD = 30.0f;
 	private static int sizeFactor = 2000000;
 	private static int sizeScaler = sizeFactor / 2;
 
+	// Only two directions (left and up) to prevent duplicate edges
+	private static final int[][] NEIGHBOR_DIRECTIONS = { { -1, 0 }, { 0, -1 } };
+	private static volatile int bandCount = Runtime.getRuntime().availableProcessors();
+	private static volatile boolean offHeap = false;
+
+	/**
+	 * "IMGG" read as a little endian int, followed by the width, height and region
+	 * size in the header of a saved image graph
+	 */
+	private static final int FILE_MAGIC = 0x47474D49;
+	private static final int FILE_HEADER_BYTES = 4 * Integer.BYTES;
+
 	@Override
 	public MSTFeatures getFeatures() {
 		return features;
@@ -88,200 +111,347 @@ public class ImageGraph implements Serializable, GraphFeatureSource {
 	 * @param image the image reference
 	 */
 	public ImageGraph(BufferedImage image) {
+		/*
+		 * if the size is above the size factor create pixel regions which will reduce
+		 * the size and memory overhead
+		 */
+		this(image, defaultRegionSize(image.getWidth(), image.getHeight()));
+	}
+
+	/**
+	 * Constructs the ImageGraph from the buffered image provided, with regions of
+	 * the given size
+	 * 
+	 * @param image           the image reference
+	 * @param pixelRegionSize the width and height of the pixel region each vertex
+	 *                        represents, 1 for a vertex per pixel
+	 * @throws IllegalArgumentException when the region size is less than 1
+	 */
+	public ImageGraph(BufferedImage image, int pixelRegionSize) throws IllegalArgumentException {
+		if (pixelRegionSize < 1)
+			throw new IllegalArgumentException("Invalid pixel region size: " + pixelRegionSize);
 
 		// maintain reference of image
 		this.image = image;
+		this.width = image.getWidth();
+		this.height = image.getHeight();
+		this.pixelRegionSize = pixelRegionSize;
+
+		// read pixels straight from the image's data buffer
+		this.raster = ImageRaster.of(image);
+
+		// build the graph from the image
+		buildGraphFromImage();
+	}
+
+	/**
+	 * Constructs the ImageGraph from a precomputed integral image, with regions of
+	 * the given size. Region colours are looked up in constant time, so graphs at
+	 * several resolutions can be built from the same integral image without
+	 * reading the pixels again
+	 * 
+	 * @param integralImage   the summed area tables of the image
+	 * @param pixelRegionSize the width and height of the pixel region each vertex
+	 *                        represents
+	 * @throws IllegalArgumentException when the region size is less than 1, or a
+	 *                                  region is too large for its sums to be
+	 *                                  exact
+	 */
+	public ImageGraph(IntegralImage integralImage, int pixelRegionSize) throws IllegalArgumentException {
+		if (pixelRegionSize < 1 || (long) pixelRegionSize * pixelRegionSize > IntegralImage.MAX_REGION_AREA)
+			throw new IllegalArgumentException("Invalid pixel region size: " + pixelRegionSize);
+
+		this.integralImage = integralImage;
+		this.width = integralImage.getWidth();
+		this.height = integralImage.getHeight();
+		this.pixelRegionSize = pixelRegionSize;
+
+		// build the graph from the integral image
+		buildGraphFromImage();
+	}
+
+	/**
+	 * Constructs the ImageGraph around a graph that was already built
+	 * 
+	 * @param width           the width of the image
+	 * @param height          the height of the image
+	 * @param pixelRegionSize the width and height of the pixel region each vertex
+	 *                        represents
+	 * @param graph           the graph of the regions
+	 */
+	private ImageGraph(int width, int height, int pixelRegionSize, AbstractCSRGraph graph) {
+		this.width = width;
+		this.height = height;
+		this.pixelRegionSize = pixelRegionSize;
+		this.graph = graph;
+	}
+
+	/**
+	 * Determines the region size used for an image of the given dimensions when no
+	 * region size is specified, images above the size factor are grouped into
+	 * pixel regions to reduce the size and memory overhead
+	 * 
+	 * @param width  the width of the image
+	 * @param height the height of the image
+	 * @return the width and height of a pixel region
+	 */
+	public static int defaultRegionSize(int width, int height) {
 		// get the size of the image in pixels
-		int size = image.getWidth() * image.getHeight();
+		int size = width * height;
 
-		/*
-		 * if the size is above the size factor create pixel regions which will reduce
-		 * the size and memory overhead
-		 */
 		if (size >= (sizeFactor - 100000)) {
-			pixelRegionSize = Math.round(size / sizeScaler);
+			return Math.round(size / sizeScaler);
 		} else {
 			// else the region size stays the same
-			pixelRegionSize = 1;
+			return 1;
 		}
+	}
 
-		// create our graph will is a representation of the given image
-		this.graph = new AdjacencyMapGraph<>();
+	/**
+	 * Gets the number of row bands the grid is split into when building a graph
+	 * 
+	 * @return the number of bands
+	 */
+	public static int getBandCount() {
+		return bandCount;
+	}
 
-		/*
-		 * create a Point to Pixel Map which will be used to get corresponding vertices
-		 * from point
-		 */
-		this.pixelVertices = new AdjacencyMap<>(size / pixelRegionSize);
+	/**
+	 * Sets the number of row bands the grid is split into when building a graph,
+	 * the bands are built in parallel on the common ForkJoinPool. A band count of
+	 * 1 builds the graph on the calling thread
+	 * 
+	 * @param bandCount the number of bands, defaults to the number of processors
+	 * @throws IllegalArgumentException when the band count is less than 1
+	 */
+	public static void setBandCount(int bandCount) throws IllegalArgumentException {
+		if (bandCount < 1)
+			throw new IllegalArgumentException("Invalid band count: " + bandCount);
+		ImageGraph.bandCount = bandCount;
+	}
 
-		// build the graph from the image
-		buildGraphFromImage();
+	/**
+	 * Determines if graphs are built off the heap
+	 * 
+	 * @return true if graphs are stored in an {@link OffHeapCSRGraph}
+	 */
+	public static boolean isOffHeap() {
+		return offHeap;
 	}
 
 	/**
-	 * This method efficiently builds the graph from an image
+	 * Sets whether graphs built or read from now on are stored off the heap in an
+	 * {@link OffHeapCSRGraph} instead of a {@link CSRGraph}, which keeps very large
+	 * rasters out of the reach of the garbage collector. An off heap graph is
+	 * released with {@link #close()}
+	 * 
+	 * @param offHeap true to store graphs off the heap, defaults to false
 	 */
-	private void buildGraphFromImage() {
+	public static void setOffHeap(boolean offHeap) {
+		ImageGraph.offHeap = offHeap;
+	}
 
-		final int width = image.getWidth();
-		final int height = image.getHeight();
-		final int gridWidth = width / pixelRegionSize + 1;
-		final int gridHeight = height / pixelRegionSize + 1;
+	/**
+	 * Creates the graph in the storage chosen by {@link #setOffHeap(boolean)}
+	 * 
+	 * @param xs          x coordinate of each vertex
+	 * @param ys          y coordinate of each vertex
+	 * @param colours     packed ARGB colour of each vertex
+	 * @param numVertices number of vertices
+	 * @param sources     first end point of each edge
+	 * @param targets     second end point of each edge
+	 * @param weights     weight of each edge
+	 * @param numEdges    number of edges
+	 * @return the graph
+	 */
+	private static AbstractCSRGraph newGraph(int[] xs, int[] ys, int[] colours, int numVertices, int[] sources,
+			int[] targets, float[] weights, int numEdges) {
+		if (offHeap)
+			return new OffHeapCSRGraph(xs, ys, colours, numVertices, sources, targets, weights, numEdges);
+		return new CSRGraph(xs, ys, colours, numVertices, sources, targets, weights, numEdges);
+	}
 
-		// create a grid that will temporarily store pixels next to each other
-		@SuppressWarnings("unchecked")
-		Vertex<Point>[][] vertexGrid = new Vertex[gridHeight][gridWidth];
+	/**
+	 * This method efficiently builds the graph from an image. The region colours,
+	 * coordinates and edges are collected in primitive arrays and handed to a
+	 * {@link CSRGraph} or an {@link OffHeapCSRGraph}, no object is created per
+	 * vertex or per edge
+	 */
+	private void buildGraphFromImage() {
 
-		// Only two directions (left and up) to prevent duplicate edges
-		final int[][] neighborDirections = { { -1, 0 }, { 0, -1 } };
+		final int gridWidth = (width + pixelRegionSize - 1) / pixelRegionSize;
+		final int gridHeight = (height + pixelRegionSize - 1) / pixelRegionSize;
+		final RegionGrid grid = new RegionGrid(gridWidth, gridHeight);
 
-		for (int y = 0; y < height; y += pixelRegionSize) {
-			for (int x = 0; x < width; x += pixelRegionSize) {
-				// Calculate relative grid coordinates
-				final int gridX = x / pixelRegionSize;
-				final int gridY = y / pixelRegionSize;
+		/*
+		 * split the grid into bands of rows, each band computes its colours and the
+		 * edges that stay inside the band, the first row of a band needs the last row
+		 * of the band above so its edges are left for the stitching pass
+		 */
+		final int bands = Math.max(1, Math.min(bandCount, gridHeight));
+		final int[] bandStarts = new int[bands + 1];
+		for (int band = 0; band <= bands; band++) {
+			bandStarts[band] = (int) ((long) gridHeight * band / bands);
+		}
+		final EdgeBuffer[] bandEdges = new EdgeBuffer[bands];
 
-				// Compute average color for the current block
-				Color averageColor = calculateBlockAverageColor(x, y);
-				// creates a point representation of the points in the region
-				Point regionPoint = createRegionPoint(x, y, averageColor);
-
-				// if the point does not already exist
-				if (pixelVertices.get(regionPoint) == null) {
-					// Create and store vertex
-					Vertex<Point> vertex = graph.insertVertex(regionPoint);
-					// add the vertex to the adjacency map
-					vertexGrid[gridY][gridX] = vertex;
-					pixelVertices.put(regionPoint, vertex);
-
-					// Connect to neighbors with smart edge pruning
-					connectToNeighbors(vertexGrid, vertex, gridX, gridY, averageColor, neighborDirections);
+		if (bands == 1) {
+			bandEdges[0] = buildBand(grid, 0, gridHeight);
+		} else {
+			ForkJoinPool.commonPool().invoke(new BandTask(grid, bandStarts, bandEdges, 0, bands));
+		}
+
+		/*
+		 * stitch the bands together in order, the seam row of each band followed by
+		 * the rest of the band, so the edges are in the same order as a sequential
+		 * row by row build
+		 */
+		int numEdges = 0;
+		for (EdgeBuffer edges : bandEdges) {
+			numEdges += edges.size;
+		}
+		final EdgeBuffer edges = new EdgeBuffer(numEdges + 2 * gridWidth * (bands - 1));
+		for (int band = 0; band < bands; band++) {
+			if (band > 0) {
+				final int gridY = bandStarts[band];
+				for (int gridX = 0; gridX < gridWidth; gridX++) {
+					connectToNeighbors(grid, gridY * gridWidth + gridX, gridX, gridY, edges);
 				}
 			}
+			edges.addAll(bandEdges[band]);
+			bandEdges[band] = null;
 		}
 
+		/*
+		 * the vertex ids are the grid positions, so the graph doubles as the Point to
+		 * vertex index (see getVertex)
+		 */
+		this.graph = newGraph(grid.xs, grid.ys, grid.colours, grid.numVertices, edges.sources, edges.targets,
+				edges.weights, edges.size);
+
+		// the pixel sources are only needed while building
+		image = null;
+		raster = null;
+		integralImage = null;
 	}
 
 	/**
-	 * This method calculates the average block color of a region
+	 * Computes the regions of the rows [firstRow, endRow) of the grid and the edges
+	 * between them. The edges of the first row are only created for the first band,
+	 * every other band leaves them to the stitching pass
 	 * 
-	 * @param startX the start X location of the pixel
-	 * @param startY the start Y location of the pixel
-	 * @return the average color
-	 */
-	private Color calculateBlockAverageColor(int startX, int startY) {
-		int sumRed = 0, sumGreen = 0, sumBlue = 0, sumAlpha = 0;
-		int count = 0;
-
-		// Calculate the end X and Y location of the region
-		final int endY = Math.min(startY + pixelRegionSize, image.getHeight());
-		final int endX = Math.min(startX + pixelRegionSize, image.getWidth());
-
-		// add up total of RGB values of the region
-		for (int y = startY; y < endY; y++) {
-			for (int x = startX; x < endX; x++) {
-				Color currentColor = new Color(image.getRGB(x, y));
-				sumRed += currentColor.getRed();
-				sumGreen += currentColor.getGreen();
-				sumBlue += currentColor.getBlue();
-				sumAlpha += currentColor.getAlpha();
-				count++;
+	 * @param grid     the grid being built
+	 * @param firstRow the first row of the band
+	 * @param endRow   the row after the last row of the band
+	 * @return the edges of the band in row major order
+	 */
+	private EdgeBuffer buildBand(RegionGrid grid, int firstRow, int endRow) {
+		final int gridWidth = grid.gridWidth;
+		final EdgeBuffer edges = new EdgeBuffer((endRow - firstRow) * gridWidth);
+
+		// scratch space for the block sums, reused for every region
+		final long[] blockSums = new long[4];
+
+		for (int gridY = firstRow; gridY < endRow; gridY++) {
+			final boolean seam = gridY == firstRow && firstRow > 0;
+
+			for (int gridX = 0; gridX < gridWidth; gridX++) {
+				final int x = gridX * pixelRegionSize;
+				final int y = gridY * pixelRegionSize;
+				final int vertex = gridY * gridWidth + gridX;
+
+				// the point representing the region sits at its centre
+				grid.xs[vertex] = x + (pixelRegionSize / 2);
+				grid.ys[vertex] = y + (pixelRegionSize / 2);
+				// Compute average color for the current block
+				grid.colours[vertex] = calculateBlockAverageColor(x, y, blockSums);
+
+				// Connect to neighbors with smart edge pruning
+				if (!seam)
+					connectToNeighbors(grid, vertex, gridX, gridY, edges);
 			}
 		}
 
-		// calculate the average by dividng by the sum
-		return new Color(Math.min(255, sumRed / count), Math.min(255, sumGreen / count), Math.min(255, sumBlue / count),
-				Math.min(255, sumAlpha / count));
+		return edges;
 	}
 
 	/**
-	 * This method creates a point from region values
+	 * This method calculates the average block color of a region, the pixels are
+	 * summed straight from the image's raster so no objects are created per pixel,
+	 * or looked up in constant time when the graph is built from an integral image
 	 * 
-	 * @param x     region coordinate of the point
-	 * @param y     region coordinate of the point
-	 * @param color region color
-	 * @return a Pint instance
+	 * @param startX    the start X location of the pixel
+	 * @param startY    the start Y location of the pixel
+	 * @param blockSums scratch space for the channel sums of the block
+	 * @return the average color packed as an ARGB int
 	 */
-	private Point createRegionPoint(int x, int y, Color color) {
-		int centerX = x + (pixelRegionSize / 2);
-		int centerY = y + (pixelRegionSize / 2);
-		return new Point(centerX, centerY, color);
+	private int calculateBlockAverageColor(int startX, int startY, long[] blockSums) {
+		int averageARGB = integralImage != null ? integralImage.averageARGB(startX, startY, pixelRegionSize)
+				: raster.averageARGB(startX, startY, pixelRegionSize, blockSums);
+		/*
+		 * regions have always been treated as opaque (alpha is dropped when reading
+		 * the pixel), so the averaged alpha is replaced
+		 */
+		return averageARGB | 0xFF000000;
 	}
 
 	/**
 	 * Connect the current vertex to relevant neighbors
 	 * 
-	 * @param vertexGrid the grid which stores the vertices in order
-	 * @param vertex     the vertex being queried
-	 * @param gridX      the current column index of the vertex on the grid
-	 * @param gridY      the current row index of the vertex on the grid
-	 * @param color      the average color of the region point
-	 * @param directions the possible offset direction used to reach neighboring
-	 *                   region points
-	 */
-	private void connectToNeighbors(Vertex<Point>[][] vertexGrid, Vertex<Point> vertex, int gridX, int gridY,
-			Color color, int[][] directions) {
+	 * @param grid   the grid being built, the colours of the vertex and its
+	 *               neighbors must already be computed
+	 * @param vertex the id of the vertex being queried
+	 * @param gridX  the current column index of the vertex on the grid
+	 * @param gridY  the current row index of the vertex on the grid
+	 * @param edges  receives the edges that are created
+	 */
+	private void connectToNeighbors(RegionGrid grid, int vertex, int gridX, int gridY, EdgeBuffer edges) {
 		// keep track of the sum and count of discarded edge weights
 		float discardedWeightSum = 0;
 		int discardedCount = 0;
 
 		// for each offset direction
-		for (int[] direction : directions) {
+		for (int[] direction : NEIGHBOR_DIRECTIONS) {
 			// calculate possible neighbor positions with direction
 			int neighborX = gridX + direction[0];
 			int neighborY = gridY + direction[1];
 
 			// if it is a valid position within the grid
-			if (isValidGridPosition(vertexGrid, neighborX, neighborY)) {
-				// possible neighbor
-				Vertex<Point> neighbor = vertexGrid[neighborY][neighborX];
-
-				// if there is a neighbor
-				if (neighbor != null && !neighbor.equals(vertex)) {
-					// calculate the weight
-					float weight = Point.colorDifference(color, neighbor.getElement().getColour());
-
-					// if the weight is above the threshold
-					if (shouldCreateEdge(weight)) {
-						/*
-						 * Include average of previously discarded edges When an edge weight is above
-						 * the threshold, the average of all previously discarded weights within the
-						 * possible neighbor distance is added to the current edge weight before
-						 * insertion
-						 */
-						if (discardedCount > 0) {
-							// calculate new weight
-							weight += (discardedWeightSum / discardedCount);
-							// accumulator reset after being applied to an edge
-							discardedWeightSum = 0;
-							discardedCount = 0;
-						}
-						graph.insertEdge(vertex, neighbor, weight);
-					} else {
-						/*
-						 * Accumulate discarded edge weights. When an edge weight is below the threshold
-						 * (30.0), its weight is added to the sum and the count is incremented
-						 */
-						discardedWeightSum += weight;
-						discardedCount++;
+			if (grid.isValidPosition(neighborX, neighborY)) {
+				// the neighbor
+				int neighbor = neighborY * grid.gridWidth + neighborX;
+
+				// calculate the weight
+				float weight = Point.colorDifference(grid.colours[vertex], grid.colours[neighbor]);
+
+				// if the weight is above the threshold
+				if (shouldCreateEdge(weight)) {
+					/*
+					 * Include average of previously discarded edges When an edge weight is above
+					 * the threshold, the average of all previously discarded weights within the
+					 * possible neighbor distance is added to the current edge weight before
+					 * insertion
+					 */
+					if (discardedCount > 0) {
+						// calculate new weight
+						weight += (discardedWeightSum / discardedCount);
+						// accumulator reset after being applied to an edge
+						discardedWeightSum = 0;
+						discardedCount = 0;
 					}
+					edges.add(vertex, neighbor, weight);
+				} else {
+					/*
+					 * Accumulate discarded edge weights. When an edge weight is below the threshold
+					 * (30.0), its weight is added to the sum and the count is incremented
+					 */
+					discardedWeightSum += weight;
+					discardedCount++;
 				}
 			}
 		}
 	}
 
-	/**
-	 * Checks if the given x and y position is within the bounds of the grid
-	 * 
-	 * @param grid the grid being queried
-	 * @param x    the x location being queried
-	 * @param y    the y location being queried
-	 * @return true if the x and y location is valid
-	 */
-	private boolean isValidGridPosition(Vertex<Point>[][] grid, int x, int y) {
-		return x >= 0 && y >= 0 && y < grid.length && x < grid[0].length;
-	}
-
 	/**
 	 * checks if the weight is above the edge threshold
 	 * @param weight the weight being queried
@@ -291,6 +461,182 @@ public class ImageGraph implements Serializable, GraphFeatureSource {
 		return weight > EDGE_THRESHOLD;
 	}
 
+	/**
+	 * A growable set of primitive arrays holding the edges created while building
+	 */
+	private static final class EdgeBuffer {
+		int[] sources, targets;
+		float[] weights;
+		int size;
+
+		EdgeBuffer(int capacity) {
+			capacity = Math.max(capacity, 1);
+			sources = new int[capacity];
+			targets = new int[capacity];
+			weights = new float[capacity];
+		}
+
+		/**
+		 * Appends an edge, growing the arrays by half when they are full
+		 * @param source the first end point
+		 * @param target the second end point
+		 * @param weight the weight of the edge
+		 */
+		void add(int source, int target, float weight) {
+			if (size == sources.length) {
+				int capacity = size + (size >> 1) + 1;
+				sources = Arrays.copyOf(sources, capacity);
+				targets = Arrays.copyOf(targets, capacity);
+				weights = Arrays.copyOf(weights, capacity);
+			}
+			sources[size] = source;
+			targets[size] = target;
+			weights[size] = weight;
+			size++;
+		}
+
+		/**
+		 * Appends every edge of another buffer
+		 * @param other the buffer being appended
+		 */
+		void addAll(EdgeBuffer other) {
+			if (size + other.size > sources.length) {
+				int capacity = size + other.size;
+				sources = Arrays.copyOf(sources, capacity);
+				targets = Arrays.copyOf(targets, capacity);
+				weights = Arrays.copyOf(weights, capacity);
+			}
+			System.arraycopy(other.sources, 0, sources, size, other.size);
+			System.arraycopy(other.targets, 0, targets, size, other.size);
+			System.arraycopy(other.weights, 0, weights, size, other.size);
+			size += other.size;
+		}
+	}
+
+	/**
+	 * The regions of the image laid out on a grid, the id of a vertex is its row
+	 * major position on the grid so the neighbours of a vertex are found with
+	 * arithmetic. Bands write to disjoint rows of the arrays
+	 */
+	private static final class RegionGrid {
+		final int gridWidth, gridHeight, numVertices;
+		final int[] xs, ys, colours;
+
+		RegionGrid(int gridWidth, int gridHeight) {
+			this.gridWidth = gridWidth;
+			this.gridHeight = gridHeight;
+			this.numVertices = gridWidth * gridHeight;
+			this.xs = new int[numVertices];
+			this.ys = new int[numVertices];
+			this.colours = new int[numVertices];
+		}
+
+		/**
+		 * Checks if the given x and y position is within the bounds of the grid
+		 * @param x the x location being queried
+		 * @param y the y location being queried
+		 * @return true if the x and y location is valid
+		 */
+		boolean isValidPosition(int x, int y) {
+			return x >= 0 && y >= 0 && y < gridHeight && x < gridWidth;
+		}
+	}
+
+	/**
+	 * Builds a range of bands, splitting the range in half until a single band
+	 * remains
+	 */
+	private final class BandTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final transient RegionGrid grid;
+		private final int[] bandStarts;
+		private final transient EdgeBuffer[] bandEdges;
+		private final int firstBand, endBand;
+
+		BandTask(RegionGrid grid, int[] bandStarts, EdgeBuffer[] bandEdges, int firstBand, int endBand) {
+			this.grid = grid;
+			this.bandStarts = bandStarts;
+			this.bandEdges = bandEdges;
+			this.firstBand = firstBand;
+			this.endBand = endBand;
+		}
+
+		@Override
+		protected void compute() {
+			if (endBand - firstBand == 1) {
+				bandEdges[firstBand] = buildBand(grid, bandStarts[firstBand], bandStarts[endBand]);
+			} else {
+				int middle = (firstBand + endBand) >>> 1;
+				invokeAll(new BandTask(grid, bandStarts, bandEdges, firstBand, middle),
+						new BandTask(grid, bandStarts, bandEdges, middle, endBand));
+			}
+		}
+	}
+
+	/**
+	 * A read only {@link Map} view from region points to their vertices, backed
+	 * by the graph itself
+	 */
+	private final class VertexView extends ReadOnlyMap<Point, Vertex<Point>> {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public int size() {
+			return graph.numVertices();
+		}
+
+		@Override
+		public Vertex<Point> get(Point key) {
+			return getVertex(key);
+		}
+
+		@Override
+		public Iterable<Point> keySet() {
+			return () -> new Iterator<Point>() {
+				private final Iterator<Vertex<Point>> vertices = graph.vertices().iterator();
+
+				@Override
+				public boolean hasNext() {
+					return vertices.hasNext();
+				}
+
+				@Override
+				public Point next() {
+					return vertices.next().getElement();
+				}
+			};
+		}
+
+		@Override
+		public Iterable<Vertex<Point>> values() {
+			return graph.vertices();
+		}
+	}
+
+	/**
+	 * Gets the width and height of the pixel region each vertex represents
+	 * @return the region size in pixels
+	 */
+	public int getPixelRegionSize() {
+		return pixelRegionSize;
+	}
+
+	/**
+	 * Gets the width of the image the graph was built from
+	 * @return the width in pixels
+	 */
+	public int getWidth() {
+		return width;
+	}
+
+	/**
+	 * Gets the height of the image the graph was built from
+	 * @return the height in pixels
+	 */
+	public int getHeight() {
+		return height;
+	}
+
 	/**
 	 * Gets the underlying graph
 	 * @return the actual graph ADT
@@ -299,22 +645,113 @@ public class ImageGraph implements Serializable, GraphFeatureSource {
 		return graph;
 	}
 
+	/**
+	 * Releases an off heap or mapped graph, the features computed from it are
+	 * kept. The graph can no longer be used afterwards, closing a graph on the
+	 * heap does nothing
+	 */
+	public void close() {
+		if (graph instanceof OffHeapCSRGraph)
+			((OffHeapCSRGraph) graph).close();
+		else if (graph instanceof MappedCSRGraph)
+			((MappedCSRGraph) graph).close();
+	}
+
+	/**
+	 * Saves the graph to a file that {@link #load(Path)} maps back. The file holds
+	 * the dimensions of the image and region size followed by the graph in the
+	 * binary format of {@link MappedCSRGraph}, the features and labels are not
+	 * saved
+	 * 
+	 * @param file the file being written, it is replaced if it exists
+	 * @throws IOException when the file could not be written
+	 */
+	public void save(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+			header.putInt(FILE_MAGIC).putInt(width).putInt(height).putInt(pixelRegionSize).flip();
+			while (header.hasRemaining()) {
+				channel.write(header);
+			}
+			MappedCSRGraph.write(graph, channel);
+		}
+	}
+
+	/**
+	 * Opens an image graph saved with {@link #save(Path)}. The graph is mapped
+	 * from the file and used as it is, loading costs a map call and one pass to
+	 * check the graph instead of a rebuild. The image is not kept in the file, so the loaded image graph only
+	 * offers the graph and the queries on it
+	 * 
+	 * @param file the file being opened
+	 * @return the image graph, release it with {@link #close()}
+	 * @throws IOException when the file is not a saved image graph or could not be
+	 *                     read
+	 */
+	public static ImageGraph load(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+			while (header.hasRemaining()) {
+				if (channel.read(header) < 0)
+					throw new EOFException("The image graph header is truncated");
+			}
+			header.flip();
+			if (header.getInt() != FILE_MAGIC)
+				throw new IOException("Not an image graph file: " + file);
+			int width = header.getInt();
+			int height = header.getInt();
+			int pixelRegionSize = header.getInt();
+			if (width < 0 || height < 0 || pixelRegionSize < 1)
+				throw new IOException("Corrupt image graph header: " + file);
+			return new ImageGraph(width, height, pixelRegionSize, MappedCSRGraph.map(channel, FILE_HEADER_BYTES));
+		}
+	}
+
 	
 	/**
-	 * Gets a {@link #Vertex<Point>} from a given {@link #Point}
+	 * Gets a {@link #Vertex<Point>} from a given {@link #Point}. Vertices are
+	 * numbered by their position on the region grid, so the vertex is found with
+	 * arithmetic on the coordinates of the point
 	 * @param p the point being queried
-	 * @return the associated vertex
+	 * @return the associated vertex, or null if the point is not the centre of a
+	 *         region
 	 */
 	public Vertex<Point> getVertex(Point p) {
-		return pixelVertices.get(p);
+		int index = regionIndex(p.x, p.y);
+		return index < 0 ? null : graph.vertexAt(index);
+	}
+
+	/**
+	 * Finds the grid position of the region centred on the given coordinates
+	 * @param x the x location being queried
+	 * @param y the y location being queried
+	 * @return the index of the region's vertex, or -1 if no region is centred on
+	 *         the coordinates
+	 */
+	private int regionIndex(int x, int y) {
+		final int half = pixelRegionSize / 2;
+		final int gridWidth = (width + pixelRegionSize - 1) / pixelRegionSize;
+		final int gridHeight = (height + pixelRegionSize - 1) / pixelRegionSize;
+
+		if (x < half || y < half || (x - half) % pixelRegionSize != 0 || (y - half) % pixelRegionSize != 0)
+			return -1;
+
+		final int gridX = (x - half) / pixelRegionSize;
+		final int gridY = (y - half) / pixelRegionSize;
+		if (gridX >= gridWidth || gridY >= gridHeight)
+			return -1;
+
+		int index = gridY * gridWidth + gridX;
+		return index < graph.numVertices() ? index : -1;
 	}
 
 	/**
 	 * Returns a {@link #Point} to {@link #Vertex<Point>} mapping
-	 * @return a map to retrieve a vertex from a point efficiently
+	 * @return a read only view to retrieve a vertex from a point efficiently
 	 */
 	public Map<Point, Vertex<Point>> getVerticies() {
-		return pixelVertices;
+		return new VertexView();
 	}
 
 	/**
@@ -357,75 +794,26 @@ public class ImageGraph implements Serializable, GraphFeatureSource {
 	}
 
 	/**
-	 * Efficiently writes a graph to a file
+	 * Writes the graph in the binary format of {@link MappedCSRGraph}, the
+	 * sections are written as packed primitives instead of an object per vertex
+	 * and edge
 	 * @param out
 	 * @throws IOException
 	 */
 	private void writeGraph(ObjectOutputStream out) throws IOException {
-		// Assign temporary IDs to vertices
-		AbstractMap<Vertex<Point>, Integer> vertexIds = new AdjacencyMap<>(graph.numVertices());
-
-		int id = 0;
-		for (Vertex<Point> v : graph.vertices()) {
-			vertexIds.put(v, id++);
-
-		}
-
-		// Write vertices
-		out.writeInt(graph.numVertices());
-		for (Vertex<Point> v : graph.vertices()) {
-
-			int i = vertexIds.get(v);
-
-			out.writeInt(i);
-			out.writeObject(v.getElement()); // Use writeObject for generic types
-		}
-
-		// Write edges
-		out.writeInt(graph.numEdges());
-		for (Edge<Float> e : graph.edges()) {
-
-			Vertex<Point>[] points = graph.endVertices(e);
-
-			out.writeInt(vertexIds.get(points[0]));
-			out.writeInt(vertexIds.get(points[1]));
-			out.writeObject(e.getElement()); // Use writeObject for generic types
-		}
+		MappedCSRGraph.write(graph, Channels.newChannel(out));
 	}
 
 	/**
-	 * Efficiently read a graph object from a file
+	 * Reads a graph in the binary format of {@link MappedCSRGraph}, each section
+	 * is read with a single bulk read and used as it is, off the heap when
+	 * {@link #setOffHeap(boolean)} is set
 	 * @param in
-	 * @return
+	 * @return the graph
 	 * @throws IOException
-	 * @throws ClassNotFoundException
 	 */
-	private Graph<Point, Float> readGraph(ObjectInputStream in) throws IOException, ClassNotFoundException {
-		Graph<Point, Float> graph = new AdjacencyMapGraph<>();
-
-		// Read vertices
-		int vertexCount = in.readInt();
-		Map<Integer, Vertex<Point>> idToVertex = new AdjacencyMap<>(vertexCount);
-
-		for (int i = 0; i < vertexCount; i++) {
-			int id = in.readInt();
-			Point element = (Point) in.readObject(); // Cast generic type
-			idToVertex.put(id, graph.insertVertex(element));
-		}
-
-		// Read edges
-		int edgeCount = in.readInt();
-		for (int i = 0; i < edgeCount; i++) {
-			int startId = in.readInt();
-			int endId = in.readInt();
-			Float element = (Float) in.readObject(); // Cast generic type
-
-			Vertex<Point> start = idToVertex.get(startId);
-			Vertex<Point> end = idToVertex.get(endId);
-			graph.insertEdge(start, end, element);
-		}
-
-		return graph;
+	private AbstractCSRGraph readGraph(ObjectInputStream in) throws IOException {
+		return MappedCSRGraph.read(Channels.newChannel(in), offHeap);
 	}
 
 }
@@ -0,0 +1,318 @@
+package acsse.csc3a.imagegraph;
+
+import java.io.File;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import acsse.csc3a.graph.MappedCSRGraph;
+import acsse.csc3a.graph.OffHeapCSRGraph;
+
+/**
+ * A process wide cache of the image graphs built from reference image files, so
+ * the references compared by every match are decoded and built once instead of
+ * once per match. A graph is keyed by the absolute path and last modified time
+ * of its file, a file that changes is built again and its old graph ages out.
+ *
+ * The cache holds graphs up to a budget of estimated heap bytes and evicts the
+ * least recently used graph first when the budget is exceeded, a graph larger
+ * than the whole budget is not cached. Only graphs on the heap are cached, a
+ * graph stored off the heap ({@link OffHeapCSRGraph}) or mapped from a file
+ * ({@link MappedCSRGraph}) is refused and stays with its caller, who closes it.
+ * The graphs are shared between every caller and must not be modified or
+ * closed, an evicted graph is simply dropped and its memory is reclaimed once
+ * no caller uses it anymore. All methods are thread safe.
+ *
+ * The budget is separate from the maxLiveGraphs budget of
+ * {@link acsse.csc3a.graph.algorithms.kNearestNeighbor}, which bounds the
+ * reference graphs a match is building and comparing at once. A match holds
+ * at most the cache budget in cached graphs plus maxLiveGraphs graphs that
+ * are not cached, a graph served from the cache still takes a live slot while
+ * it is compared but costs no memory of its own
+ */
+public final class ImageGraphCache {
+
+	/**
+	 * The estimated bytes of a graph for each vertex (coordinates, colour and
+	 * offset) and for each edge (end points and weight, and its two adjacency
+	 * slots)
+	 */
+	private static final long BYTES_PER_VERTEX = 4 * Integer.BYTES;
+	private static final long BYTES_PER_EDGE = 3 * (2 * Integer.BYTES + Float.BYTES);
+
+	/**
+	 * The estimated bytes of the image graph and graph objects themselves
+	 */
+	private static final long BYTES_PER_GRAPH = 512;
+
+	/**
+	 * The shared cache, by default allowed a quarter of the maximum heap
+	 */
+	private static final ImageGraphCache INSTANCE = new ImageGraphCache(Runtime.getRuntime().maxMemory() / 4);
+
+	/**
+	 * the cached graphs from least to most recently used
+	 */
+	private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+	private long maxBytes;
+	private long bytes = 0;
+	private long hits = 0;
+	private long misses = 0;
+	private long evictions = 0;
+
+	/**
+	 * Creates a cache with a budget
+	 *
+	 * @param maxBytes the largest number of estimated bytes the cached graphs may
+	 *                 take, 0 disables the cache
+	 * @throws IllegalArgumentException if the budget is negative
+	 */
+	public ImageGraphCache(long maxBytes) throws IllegalArgumentException {
+		setMaxBytes(maxBytes);
+	}
+
+	/**
+	 * Gets the cache shared by the whole process, consulted by
+	 * {@link ImageGraphProxy}
+	 *
+	 * @return the shared cache
+	 */
+	public static ImageGraphCache getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Estimates the memory taken by an image graph, the graph arrays are counted
+	 * wherever they are stored, but only graphs on the heap are cached
+	 *
+	 * @param graph the image graph being queried
+	 * @return the estimated bytes of the graph
+	 */
+	public static long estimateBytes(ImageGraph graph) {
+		return BYTES_PER_GRAPH + BYTES_PER_VERTEX * graph.getGraph().numVertices()
+				+ BYTES_PER_EDGE * graph.getGraph().numEdges();
+	}
+
+	/**
+	 * Gets the graph cached for a file, and marks it as the most recently used
+	 *
+	 * @param file the image file
+	 * @return the graph built from the file as it is now, or null if there is none
+	 */
+	public synchronized ImageGraph get(File file) {
+		Entry entry = entries.get(new Key(file));
+		if (entry == null) {
+			misses++;
+			return null;
+		}
+		hits++;
+		return entry.graph;
+	}
+
+	/**
+	 * Determines if a graph is cached for a file, without counting a hit or miss
+	 * or changing the order of use
+	 *
+	 * @param file the image file
+	 * @return true if the graph built from the file as it is now is cached
+	 */
+	public synchronized boolean contains(File file) {
+		return entries.containsKey(new Key(file));
+	}
+
+	/**
+	 * Caches the graph built from a file, replacing any graph cached for it, and
+	 * evicts the least recently used graphs while the budget is exceeded
+	 *
+	 * @param file  the image file
+	 * @param graph the graph built from the file
+	 * @return true if the graph was cached, false if it is larger than the budget
+	 *         or not stored on the heap
+	 */
+	public synchronized boolean put(File file, ImageGraph graph) {
+		Key key = new Key(file);
+		long size = estimateBytes(graph);
+
+		Entry previous = entries.remove(key);
+		if (previous != null)
+			bytes -= previous.bytes;
+
+		if (size > maxBytes || !isOnHeap(graph))
+			return false;
+
+		entries.put(key, new Entry(graph, size));
+		bytes += size;
+		evict();
+		return true;
+	}
+
+	/**
+	 * Removes the graph cached for a file
+	 *
+	 * @param file the image file
+	 * @return true if a graph was cached for the file
+	 */
+	public synchronized boolean remove(File file) {
+		Entry entry = entries.remove(new Key(file));
+		if (entry == null)
+			return false;
+		bytes -= entry.bytes;
+		return true;
+	}
+
+	/**
+	 * Removes every cached graph, the statistics are kept
+	 */
+	public synchronized void clear() {
+		entries.clear();
+		bytes = 0;
+	}
+
+	/**
+	 * Sets the budget, evicting the least recently used graphs if it is exceeded
+	 *
+	 * @param maxBytes the largest number of estimated bytes the cached graphs may
+	 *                 take, 0 disables the cache
+	 * @throws IllegalArgumentException if the budget is negative
+	 */
+	public synchronized void setMaxBytes(long maxBytes) throws IllegalArgumentException {
+		if (maxBytes < 0)
+			throw new IllegalArgumentException("Invalid cache budget: " + maxBytes);
+		this.maxBytes = maxBytes;
+		evict();
+	}
+
+	/**
+	 * Gets the budget
+	 *
+	 * @return the largest number of estimated bytes the cached graphs may take
+	 */
+	public synchronized long getMaxBytes() {
+		return maxBytes;
+	}
+
+	/**
+	 * Gets the estimated bytes taken by the cached graphs
+	 *
+	 * @return the estimated bytes, at most the budget
+	 */
+	public synchronized long getBytes() {
+		return bytes;
+	}
+
+	/**
+	 * Gets the number of cached graphs
+	 *
+	 * @return the number of graphs
+	 */
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Gets the number of lookups that found a graph
+	 *
+	 * @return the number of hits
+	 */
+	public synchronized long getHitCount() {
+		return hits;
+	}
+
+	/**
+	 * Gets the number of lookups that found no graph
+	 *
+	 * @return the number of misses
+	 */
+	public synchronized long getMissCount() {
+		return misses;
+	}
+
+	/**
+	 * Gets the number of graphs evicted to stay within the budget
+	 *
+	 * @return the number of evictions
+	 */
+	public synchronized long getEvictionCount() {
+		return evictions;
+	}
+
+	/**
+	 * Resets the hit, miss and eviction counts
+	 */
+	public synchronized void resetStatistics() {
+		hits = misses = evictions = 0;
+	}
+
+	@Override
+	public synchronized String toString() {
+		long lookups = hits + misses;
+		return String.format("ImageGraphCache[%d graphs, %d/%d bytes, %d hits, %d misses (%.1f%% hit rate), %d evictions]",
+				entries.size(), bytes, maxBytes, hits, misses, lookups == 0 ? 0.0 : 100.0 * hits / lookups, evictions);
+	}
+
+	/**
+	 * Determines if the arrays of an image graph are stored on the heap, a graph
+	 * whose native memory is freed by closing it cannot be shared by the cache
+	 *
+	 * @param graph the image graph being queried
+	 * @return true if the graph is on the heap
+	 */
+	private static boolean isOnHeap(ImageGraph graph) {
+		return !(graph.getGraph() instanceof OffHeapCSRGraph) && !(graph.getGraph() instanceof MappedCSRGraph);
+	}
+
+	/**
+	 * Evicts the least recently used graphs until the budget is met
+	 */
+	private void evict() {
+		Iterator<Map.Entry<Key, Entry>> eldest = entries.entrySet().iterator();
+		while (bytes > maxBytes && eldest.hasNext()) {
+			bytes -= eldest.next().getValue().bytes;
+			eldest.remove();
+			evictions++;
+		}
+	}
+
+	/**
+	 * Identifies a file as it is at a point in time
+	 */
+	private static final class Key {
+		private final String path;
+		private final long lastModified;
+
+		Key(File file) {
+			this.path = file.getAbsolutePath();
+			this.lastModified = file.lastModified();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (!(obj instanceof Key))
+				return false;
+			Key other = (Key) obj;
+			return lastModified == other.lastModified && path.equals(other.path);
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * path.hashCode() + Long.hashCode(lastModified);
+		}
+	}
+
+	/**
+	 * A cached graph and its estimated bytes
+	 */
+	private static final class Entry {
+		private final ImageGraph graph;
+		private final long bytes;
+
+		Entry(ImageGraph graph, long bytes) {
+			this.graph = graph;
+			this.bytes = bytes;
+		}
+	}
+
+}
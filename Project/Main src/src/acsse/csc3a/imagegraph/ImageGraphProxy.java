@@ -2,6 +2,10 @@ package acsse.csc3a.imagegraph;
 
 import java.awt.image.BufferedImage;
 import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+import javax.imageio.ImageIO;
 
 import acsse.csc3a.graph.algorithms.CATEGORY_TYPE;
 import acsse.csc3a.graph.algorithms.MATCH_TYPE;
@@ -13,7 +17,11 @@ import acsse.csc3a.graph.algorithms.MSTFeatures;
  * It acts as a Gatekeeper and only does the memory and time consuming
  * job of creating a graph when the {@link #getGraph()} method is called,
  * ensuring it’s only instantiated and used when truly needed, however this can
- * only be done once
+ * only be done once.
+ * 
+ * Graphs are looked up in the shared {@link ImageGraphCache} before they are
+ * built, and cached once built, so a reference file is only decoded and built
+ * again after it changes or its graph was evicted
  */
 public class ImageGraphProxy implements AbstractImageGraphProxy {
 
@@ -26,7 +34,8 @@ public class ImageGraphProxy implements AbstractImageGraphProxy {
 	 * Creates an ImageGraphProxy which is ready to create a single ImageGraph
 	 * instance
 	 * 
-	 * @param image    the buffered image
+	 * @param image    the buffered image, or null to read it from the file if the
+	 *                 graph is not cached
 	 * @param file     the file associated with the image
 	 * @param features the features of the image graph, to be assigned if the image
 	 *                 graph is constructed
@@ -50,6 +59,8 @@ public class ImageGraphProxy implements AbstractImageGraphProxy {
 	 * @throws IllegalStateException    when the graph has already been loaded
 	 * @throws IllegalArgumentException when the ImageGraph's directory could not
 	 *                                  map the graph to a valid CATEGORY_TYPE
+	 * @throws UncheckedIOException     when the graph is not cached and the image
+	 *                                  could not be read from the file
 	 */
 	@Override
 	public ImageGraph getGraph() throws IllegalStateException, IllegalArgumentException {
@@ -60,8 +71,17 @@ public class ImageGraphProxy implements AbstractImageGraphProxy {
 			throw new IllegalStateException(
 					"Error: This image graph has already been loaded, image graphs can only be loaded once from this scource");
 
+		// a cached graph was built from the same file and already initialized
+		ImageGraphCache cache = ImageGraphCache.getInstance();
+		ImageGraph graph = cache.get(file);
+		if (graph != null)
+			return graph;
+
+		if (image == null)
+			image = readImage();
+
 		// construct and initialize the graph
-		ImageGraph graph = new ImageGraph(image);
+		graph = new ImageGraph(image);
 
 		String name = file.getName().toLowerCase();
 		MATCH_TYPE label = MATCH_TYPE.GREEN;
@@ -97,9 +117,30 @@ public class ImageGraphProxy implements AbstractImageGraphProxy {
 
 		graph.setFeatures(features);
 
+		// the image is no longer needed once the graph is built
+		image = null;
+		cache.put(file, graph);
+
 		return graph;
 	}
 
+	/**
+	 * Reads the image from the file
+	 * 
+	 * @return the image
+	 * @throws UncheckedIOException when the file could not be read as an image
+	 */
+	private BufferedImage readImage() throws UncheckedIOException {
+		try {
+			BufferedImage image = ImageIO.read(file);
+			if (image == null)
+				throw new IOException("Could not read image - " + file.getName());
+			return image;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
 	@Override
 	public File getFile() {
 		// TODO Auto-generated method stub
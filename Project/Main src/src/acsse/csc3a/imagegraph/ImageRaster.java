@@ -0,0 +1,325 @@
+package acsse.csc3a.imagegraph;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.Raster;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+
+/**
+ * A pixel access layer that reads colours straight from the
+ * {@link java.awt.image.DataBuffer} of a {@link BufferedImage}. Going through
+ * {@link BufferedImage#getRGB(int, int)} converts every pixel through the
+ * colour model and {@link java.awt.Color} allocates an object per pixel, this
+ * class instead works on the backing arrays with primitive arithmetic only so
+ * no objects are created per pixel.
+ *
+ * Specialised readers exist for the common packed int (TYPE_INT_ARGB,
+ * TYPE_INT_RGB) and interleaved byte (TYPE_3BYTE_BGR, TYPE_4BYTE_ABGR)
+ * layouts, every other layout falls back to reading whole rows with
+ * {@link BufferedImage#getRGB(int, int, int, int, int[], int, int)} into a
+ * reusable row buffer
+ */
+public abstract class ImageRaster {
+
+	/**
+	 * width of the image in pixels
+	 */
+	protected final int width;
+
+	/**
+	 * height of the image in pixels
+	 */
+	protected final int height;
+
+	/**
+	 * Constructs the raster with the dimensions of the image
+	 *
+	 * @param width  width of the image in pixels
+	 * @param height height of the image in pixels
+	 */
+	protected ImageRaster(int width, int height) {
+		this.width = width;
+		this.height = height;
+	}
+
+	/**
+	 * Creates the most efficient raster reader for the layout of the given image
+	 *
+	 * @param image the image being read
+	 * @return a raster reader over the pixels of the image
+	 */
+	public static ImageRaster of(BufferedImage image) {
+		Raster raster = image.getRaster();
+		DataBuffer buffer = raster.getDataBuffer();
+		SampleModel model = raster.getSampleModel();
+
+		/*
+		 * the fast paths index the backing array directly, so they are only safe when
+		 * the raster is not a translated child raster and the data lives in one bank
+		 */
+		boolean plain = raster.getSampleModelTranslateX() == 0 && raster.getSampleModelTranslateY() == 0
+				&& buffer.getNumBanks() == 1;
+
+		if (plain) {
+			switch (image.getType()) {
+			case BufferedImage.TYPE_INT_ARGB:
+			case BufferedImage.TYPE_INT_RGB:
+				if (buffer instanceof DataBufferInt && model instanceof SinglePixelPackedSampleModel) {
+					return new IntRaster(image, (DataBufferInt) buffer, (SinglePixelPackedSampleModel) model,
+							image.getType() == BufferedImage.TYPE_INT_ARGB);
+				}
+				break;
+			case BufferedImage.TYPE_3BYTE_BGR:
+			case BufferedImage.TYPE_4BYTE_ABGR:
+				if (buffer instanceof DataBufferByte && model instanceof ComponentSampleModel) {
+					return new ByteRaster(image, (DataBufferByte) buffer, (ComponentSampleModel) model);
+				}
+				break;
+			default:
+				break;
+			}
+		}
+
+		// any other layout is read through the colour model, one row at a time
+		return new GenericRaster(image);
+	}
+
+	/**
+	 * Gets the width of the image
+	 *
+	 * @return the width in pixels
+	 */
+	public int getWidth() {
+		return width;
+	}
+
+	/**
+	 * Gets the height of the image
+	 *
+	 * @return the height in pixels
+	 */
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * Calculates the average colour of the block starting at (startX, startY) with
+	 * the given size, clipped to the bounds of the image. Every channel is the
+	 * integer mean of the channel over the block
+	 *
+	 * @param startX    the start X location of the block
+	 * @param startY    the start Y location of the block
+	 * @param blockSize the width and height of the block
+	 * @param sums      scratch space of at least four values, reused between calls
+	 *                  so nothing is allocated per block
+	 * @return the average colour packed as an ARGB int
+	 */
+	public int averageARGB(int startX, int startY, int blockSize, long[] sums) {
+		// Calculate the end X and Y location of the block
+		final int endX = Math.min(startX + blockSize, width);
+		final int endY = Math.min(startY + blockSize, height);
+
+		sumBlock(startX, startY, endX, endY, sums);
+
+		int count = (endX - startX) * (endY - startY);
+		return packARGB((int) (sums[0] / count), (int) (sums[1] / count), (int) (sums[2] / count),
+				(int) (sums[3] / count));
+	}
+
+	/**
+	 * Adds up the channels of every pixel in the block [startX, endX) x [startY,
+	 * endY)
+	 *
+	 * @param startX the first column of the block
+	 * @param startY the first row of the block
+	 * @param endX   the column after the last column of the block
+	 * @param endY   the row after the last row of the block
+	 * @param sums   receives the alpha, red, green and blue totals in that order
+	 */
+	public abstract void sumBlock(int startX, int startY, int endX, int endY, long[] sums);
+
+	/**
+	 * Reads a row of pixels as packed ARGB ints
+	 *
+	 * @param y   the row being read
+	 * @param row receives the pixels of the row, must hold at least width values
+	 */
+	public abstract void readRow(int y, int[] row);
+
+	/**
+	 * Packs the colour channels into a single ARGB int, clamping each channel to
+	 * 255
+	 *
+	 * @param alpha the alpha channel
+	 * @param red   the red channel
+	 * @param green the green channel
+	 * @param blue  the blue channel
+	 * @return the packed colour
+	 */
+	public static int packARGB(int alpha, int red, int green, int blue) {
+		return (Math.min(255, alpha) << 24) | (Math.min(255, red) << 16) | (Math.min(255, green) << 8)
+				| Math.min(255, blue);
+	}
+
+	/**
+	 * Reader for images whose pixels are packed into one int each
+	 */
+	private static final class IntRaster extends ImageRaster {
+		private final int[] data;
+		private final int offset;
+		private final int scanline;
+		private final boolean hasAlpha;
+
+		IntRaster(BufferedImage image, DataBufferInt buffer, SinglePixelPackedSampleModel model, boolean hasAlpha) {
+			super(image.getWidth(), image.getHeight());
+			this.data = buffer.getData();
+			this.offset = buffer.getOffset();
+			this.scanline = model.getScanlineStride();
+			this.hasAlpha = hasAlpha;
+		}
+
+		@Override
+		public void sumBlock(int startX, int startY, int endX, int endY, long[] sums) {
+			long sumAlpha = 0, sumRed = 0, sumGreen = 0, sumBlue = 0;
+
+			for (int y = startY; y < endY; y++) {
+				int index = offset + y * scanline + startX;
+				for (int x = startX; x < endX; x++, index++) {
+					int pixel = data[index];
+					sumAlpha += pixel >>> 24;
+					sumRed += (pixel >> 16) & 0xFF;
+					sumGreen += (pixel >> 8) & 0xFF;
+					sumBlue += pixel & 0xFF;
+				}
+			}
+
+			// images without an alpha channel are fully opaque
+			if (!hasAlpha)
+				sumAlpha = 255L * (endX - startX) * (endY - startY);
+
+			sums[0] = sumAlpha;
+			sums[1] = sumRed;
+			sums[2] = sumGreen;
+			sums[3] = sumBlue;
+		}
+
+		@Override
+		public void readRow(int y, int[] row) {
+			System.arraycopy(data, offset + y * scanline, row, 0, width);
+			if (!hasAlpha) {
+				for (int x = 0; x < width; x++)
+					row[x] = (row[x] & 0xFFFFFF) | 0xFF000000;
+			}
+		}
+	}
+
+	/**
+	 * Reader for images whose channels are interleaved bytes, such as BGR and ABGR
+	 */
+	private static final class ByteRaster extends ImageRaster {
+		private final byte[] data;
+		private final int offset;
+		private final int scanline;
+		private final int pixelStride;
+		private final int redOffset, greenOffset, blueOffset, alphaOffset;
+
+		ByteRaster(BufferedImage image, DataBufferByte buffer, ComponentSampleModel model) {
+			super(image.getWidth(), image.getHeight());
+			this.data = buffer.getData();
+			this.offset = buffer.getOffset();
+			this.scanline = model.getScanlineStride();
+			this.pixelStride = model.getPixelStride();
+
+			// band offsets are given in red, green, blue (, alpha) order
+			int[] bands = model.getBandOffsets();
+			this.redOffset = bands[0];
+			this.greenOffset = bands[1];
+			this.blueOffset = bands[2];
+			this.alphaOffset = bands.length > 3 ? bands[3] : -1;
+		}
+
+		@Override
+		public void sumBlock(int startX, int startY, int endX, int endY, long[] sums) {
+			long sumAlpha = 0, sumRed = 0, sumGreen = 0, sumBlue = 0;
+
+			for (int y = startY; y < endY; y++) {
+				int index = offset + y * scanline + startX * pixelStride;
+				for (int x = startX; x < endX; x++, index += pixelStride) {
+					sumRed += data[index + redOffset] & 0xFF;
+					sumGreen += data[index + greenOffset] & 0xFF;
+					sumBlue += data[index + blueOffset] & 0xFF;
+					if (alphaOffset >= 0)
+						sumAlpha += data[index + alphaOffset] & 0xFF;
+				}
+			}
+
+			// images without an alpha channel are fully opaque
+			if (alphaOffset < 0)
+				sumAlpha = 255L * (endX - startX) * (endY - startY);
+
+			sums[0] = sumAlpha;
+			sums[1] = sumRed;
+			sums[2] = sumGreen;
+			sums[3] = sumBlue;
+		}
+
+		@Override
+		public void readRow(int y, int[] row) {
+			int index = offset + y * scanline;
+			for (int x = 0; x < width; x++, index += pixelStride) {
+				int alpha = alphaOffset >= 0 ? data[index + alphaOffset] & 0xFF : 0xFF;
+				row[x] = (alpha << 24) | ((data[index + redOffset] & 0xFF) << 16)
+						| ((data[index + greenOffset] & 0xFF) << 8) | (data[index + blueOffset] & 0xFF);
+			}
+		}
+	}
+
+	/**
+	 * Reader for every other layout, the colour model converts whole rows into a
+	 * buffer that is reused between calls. Every thread gets its own buffer so
+	 * blocks can be summed concurrently
+	 */
+	private static final class GenericRaster extends ImageRaster {
+		private final BufferedImage image;
+		private final ThreadLocal<int[]> rowBuffers;
+
+		GenericRaster(BufferedImage image) {
+			super(image.getWidth(), image.getHeight());
+			this.image = image;
+			this.rowBuffers = ThreadLocal.withInitial(() -> new int[width]);
+		}
+
+		@Override
+		public void sumBlock(int startX, int startY, int endX, int endY, long[] sums) {
+			long sumAlpha = 0, sumRed = 0, sumGreen = 0, sumBlue = 0;
+			final int blockWidth = endX - startX;
+			final int[] rowBuffer = rowBuffers.get();
+
+			for (int y = startY; y < endY; y++) {
+				image.getRGB(startX, y, blockWidth, 1, rowBuffer, 0, blockWidth);
+				for (int i = 0; i < blockWidth; i++) {
+					int pixel = rowBuffer[i];
+					sumAlpha += pixel >>> 24;
+					sumRed += (pixel >> 16) & 0xFF;
+					sumGreen += (pixel >> 8) & 0xFF;
+					sumBlue += pixel & 0xFF;
+				}
+			}
+
+			sums[0] = sumAlpha;
+			sums[1] = sumRed;
+			sums[2] = sumGreen;
+			sums[3] = sumBlue;
+		}
+
+		@Override
+		public void readRow(int y, int[] row) {
+			image.getRGB(0, y, width, 1, row, 0, width);
+		}
+	}
+
+}
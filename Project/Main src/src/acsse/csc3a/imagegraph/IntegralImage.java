@@ -0,0 +1,171 @@
+package acsse.csc3a.imagegraph;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * A summed area table (integral image) of an image, one table per ARGB
+ * channel. Each table entry holds the sum of the channel over every pixel above
+ * and to the left of it, so the sum (and therefore the average colour) of any
+ * rectangular region is found with four lookups no matter how large the region
+ * is.
+ *
+ * This allows graphs to be built at several region sizes from a single decode
+ * of the image, for example for coarse to fine matching, without reading the
+ * pixels again.
+ *
+ * The tables are stored as ints and rely on two's complement wrap around, the
+ * difference of four entries is exact as long as the true region sum fits in
+ * 32 unsigned bits, which holds for any region of up to 16 843 009 pixels
+ * (2^32 / 255)
+ */
+public class IntegralImage {
+
+	/**
+	 * the largest region whose channel sums are guaranteed to be exact
+	 */
+	public static final long MAX_REGION_AREA = 0xFFFFFFFFL / 255;
+
+	private final int width;
+	private final int height;
+
+	/**
+	 * width of a table row, one more than the image so row and column 0 are zero
+	 */
+	private final int stride;
+
+	/**
+	 * the summed area tables, alpha is null when the image is opaque
+	 */
+	private final int[] alpha, red, green, blue;
+
+	/**
+	 * Computes the integral image of the given image in a single pass over its
+	 * raster
+	 *
+	 * @param image the image being summed
+	 * @throws IllegalArgumentException when the image is too large for the tables
+	 *                                  to be indexed with an int
+	 */
+	public IntegralImage(BufferedImage image) throws IllegalArgumentException {
+		this(ImageRaster.of(image), image.getColorModel().hasAlpha());
+	}
+
+	/**
+	 * Computes the integral image of the given raster in a single pass
+	 *
+	 * @param raster   the raster being summed
+	 * @param hasAlpha false if the image is opaque, in which case no alpha table
+	 *                 is kept
+	 * @throws IllegalArgumentException when the image is too large for the tables
+	 *                                  to be indexed with an int
+	 */
+	public IntegralImage(ImageRaster raster, boolean hasAlpha) throws IllegalArgumentException {
+		this.width = raster.getWidth();
+		this.height = raster.getHeight();
+		this.stride = width + 1;
+
+		long tableSize = (long) stride * (height + 1);
+		if (tableSize > Integer.MAX_VALUE - 8)
+			throw new IllegalArgumentException("Image is too large for an integral image: " + width + "x" + height);
+
+		alpha = hasAlpha ? new int[(int) tableSize] : null;
+		red = new int[(int) tableSize];
+		green = new int[(int) tableSize];
+		blue = new int[(int) tableSize];
+
+		int[] row = new int[width];
+
+		for (int y = 0; y < height; y++) {
+			raster.readRow(y, row);
+
+			// running totals of the current row
+			int rowAlpha = 0, rowRed = 0, rowGreen = 0, rowBlue = 0;
+
+			// the entry above the current one, and the current entry
+			int above = y * stride + 1;
+			int current = above + stride;
+
+			for (int x = 0; x < width; x++, above++, current++) {
+				int pixel = row[x];
+				rowRed += (pixel >> 16) & 0xFF;
+				rowGreen += (pixel >> 8) & 0xFF;
+				rowBlue += pixel & 0xFF;
+
+				red[current] = red[above] + rowRed;
+				green[current] = green[above] + rowGreen;
+				blue[current] = blue[above] + rowBlue;
+
+				if (alpha != null) {
+					rowAlpha += pixel >>> 24;
+					alpha[current] = alpha[above] + rowAlpha;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Gets the width of the summed image
+	 *
+	 * @return the width in pixels
+	 */
+	public int getWidth() {
+		return width;
+	}
+
+	/**
+	 * Gets the height of the summed image
+	 *
+	 * @return the height in pixels
+	 */
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * Calculates the average colour of the block starting at (startX, startY) with
+	 * the given size, clipped to the bounds of the image, in constant time. Every
+	 * channel is the integer mean of the channel over the block
+	 *
+	 * @param startX    the start X location of the block
+	 * @param startY    the start Y location of the block
+	 * @param blockSize the width and height of the block
+	 * @return the average colour packed as an ARGB int
+	 */
+	public int averageARGB(int startX, int startY, int blockSize) {
+		// Calculate the end X and Y location of the block
+		final int endX = Math.min(startX + blockSize, width);
+		final int endY = Math.min(startY + blockSize, height);
+
+		final int count = (endX - startX) * (endY - startY);
+
+		// corners of the block within the tables
+		final int topLeft = startY * stride + startX;
+		final int topRight = startY * stride + endX;
+		final int bottomLeft = endY * stride + startX;
+		final int bottomRight = endY * stride + endX;
+
+		int averageAlpha = alpha == null ? 255
+				: (int) (regionSum(alpha, topLeft, topRight, bottomLeft, bottomRight) / count);
+
+		return ImageRaster.packARGB(averageAlpha,
+				(int) (regionSum(red, topLeft, topRight, bottomLeft, bottomRight) / count),
+				(int) (regionSum(green, topLeft, topRight, bottomLeft, bottomRight) / count),
+				(int) (regionSum(blue, topLeft, topRight, bottomLeft, bottomRight) / count));
+	}
+
+	/**
+	 * Calculates the sum of a channel over a block from the four corners of the
+	 * block
+	 *
+	 * @param table       the summed area table of the channel
+	 * @param topLeft     index of the top left corner
+	 * @param topRight    index of the top right corner
+	 * @param bottomLeft  index of the bottom left corner
+	 * @param bottomRight index of the bottom right corner
+	 * @return the sum, read as an unsigned 32 bit value
+	 */
+	private static long regionSum(int[] table, int topLeft, int topRight, int bottomLeft, int bottomRight) {
+		return (table[bottomRight] - table[bottomLeft] - table[topRight] + table[topLeft]) & 0xFFFFFFFFL;
+	}
+
+}
@@ -4,12 +4,13 @@ import java.awt.Color;
 import java.io.Serializable;
 
 /**
- * A point object which stores point properties and has behaviour for a point
+ * A point object which stores point properties and has behaviour for a point.
+ * The colour is kept as a single packed ARGB int and hue, saturation and
+ * brightness are derived from it when needed, so a point holds no objects
  */
 public class Point implements Serializable {
 	int x, y;
-	Color color;
-	float[] hsb;
+	int argb;
 
 	/**
 	 * Constructs a point with the given position and colour
@@ -18,11 +19,19 @@ public class Point implements Serializable {
 	 * @param color color of point
 	 */
 	public Point(int x, int y, Color color) {
+		this(x, y, color.getRGB());
+	}
+
+	/**
+	 * Constructs a point with the given position and packed colour
+	 * @param x x location of point
+	 * @param y y location of point
+	 * @param argb color of point packed as an ARGB int
+	 */
+	public Point(int x, int y, int argb) {
 		this.x = x;
 		this.y = y;
-		this.color = color;
-
-		this.hsb = Color.RGBtoHSB(color.getRed(), color.getGreen(), color.getBlue(), null);
+		this.argb = argb;
 	}
 
 	/**
@@ -30,7 +39,15 @@ public class Point implements Serializable {
 	 * @return the color
 	 */
 	public Color getColour() {
-		return color;
+		return new Color(argb, true);
+	}
+
+	/**
+	 * Gets the color of the point without creating a Color
+	 * @return the color packed as an ARGB int
+	 */
+	public int getARGB() {
+		return argb;
 	}
 
 	/**
@@ -40,25 +57,94 @@ public class Point implements Serializable {
 	 * @return the total of rgb differences
 	 */
 	public static float colorDifference(Color color1, Color color2) {
-		int dr = color1.getRed() - color2.getRed();
-		int dg = color1.getGreen() - color2.getGreen();
-		int db = color1.getBlue() - color2.getBlue();
-		int da = color1.getAlpha() - color2.getAlpha();
+		return colorDifference(color1.getRGB(), color2.getRGB());
+	}
+
+	/**
+	 * Calculates the difference in color between two packed ARGB colors, without
+	 * creating Color objects
+	 * @param argb1 the first color
+	 * @param argb2 the second color
+	 * @return the total of rgb differences
+	 */
+	public static float colorDifference(int argb1, int argb2) {
+		int dr = ((argb1 >> 16) & 0xFF) - ((argb2 >> 16) & 0xFF);
+		int dg = ((argb1 >> 8) & 0xFF) - ((argb2 >> 8) & 0xFF);
+		int db = (argb1 & 0xFF) - (argb2 & 0xFF);
+		int da = (argb1 >>> 24) - (argb2 >>> 24);
 
 		return (float) Math.sqrt(dr * dr + dg * dg + db * db + da * da);
 	}
 
+	/**
+	 * Calculates the hue of a packed colour, the same value as index 0 of
+	 * {@link Color#RGBtoHSB(int, int, int, float[])} without allocating the array
+	 * @param argb the colour packed as an ARGB int
+	 * @return the hue between 0 and 1
+	 */
+	public static float hue(int argb) {
+		final int r = (argb >> 16) & 0xFF;
+		final int g = (argb >> 8) & 0xFF;
+		final int b = argb & 0xFF;
+		final int cmax = Math.max(r, Math.max(g, b));
+		final int cmin = Math.min(r, Math.min(g, b));
+
+		// grey has no saturation and therefore no hue
+		if (cmax == cmin)
+			return 0;
+
+		final float range = cmax - cmin;
+		final float redc = (cmax - r) / range;
+		final float greenc = (cmax - g) / range;
+		final float bluec = (cmax - b) / range;
+
+		float hue;
+		if (r == cmax)
+			hue = bluec - greenc;
+		else if (g == cmax)
+			hue = 2.0f + redc - bluec;
+		else
+			hue = 4.0f + greenc - redc;
+		hue = hue / 6.0f;
+		if (hue < 0)
+			hue = hue + 1.0f;
+		return hue;
+	}
+
+	/**
+	 * Calculates the saturation of a packed colour, the same value as index 1 of
+	 * {@link Color#RGBtoHSB(int, int, int, float[])}
+	 * @param argb the colour packed as an ARGB int
+	 * @return the saturation between 0 and 1
+	 */
+	public static float saturation(int argb) {
+		final int r = (argb >> 16) & 0xFF;
+		final int g = (argb >> 8) & 0xFF;
+		final int b = argb & 0xFF;
+		final int cmax = Math.max(r, Math.max(g, b));
+		final int cmin = Math.min(r, Math.min(g, b));
+		return cmax == 0 ? 0 : ((float) (cmax - cmin)) / ((float) cmax);
+	}
+
+	/**
+	 * Calculates the brightness of a packed colour, the same value as index 2 of
+	 * {@link Color#RGBtoHSB(int, int, int, float[])}
+	 * @param argb the colour packed as an ARGB int
+	 * @return the brightness between 0 and 1
+	 */
+	public static float brightness(int argb) {
+		final int cmax = Math.max((argb >> 16) & 0xFF, Math.max((argb >> 8) & 0xFF, argb & 0xFF));
+		return ((float) cmax) / 255.0f;
+	}
+
 	/**
 	 * Calculates the opacity of the color of the point
 	 * @return the calculated opacity
 	 */
 	public int calculateWaterOpacity() {
-
-		float[] hsb = Color.RGBtoHSB(color.getRed(), color.getGreen(), color.getBlue(), null);
-
 		// Calculate "water opacity score" (0-255)
-		return (int) (255 * (0.6 * (1 - hsb[1]) + // Low saturation → more "transparent"
-				0.4 * hsb[2] // High brightness → more "washed out"
+		return (int) (255 * (0.6 * (1 - saturation(argb)) + // Low saturation → more "transparent"
+				0.4 * brightness(argb) // High brightness → more "washed out"
 		));
 	}
 
@@ -67,7 +153,17 @@ public class Point implements Serializable {
 	 * @return true if it a water pixel, false otherwise
 	 */
 	public boolean isLikelyWater() {
-		return (hsb[0] >= 0.45 && hsb[0] <= 0.65); // Clean blue water
+		return isLikelyWater(argb);
+	}
+
+	/**
+	 * Likelihood of weather a packed colour is a water pixel or not
+	 * @param argb the colour packed as an ARGB int
+	 * @return true if it a water pixel, false otherwise
+	 */
+	public static boolean isLikelyWater(int argb) {
+		float hue = hue(argb);
+		return (hue >= 0.45 && hue <= 0.65); // Clean blue water
 	}
 
 	/**
@@ -75,9 +171,18 @@ public class Point implements Serializable {
 	 * @return a quality metric
 	 */
 	public double getQuality() {
+		return getQuality(argb);
+	}
+
+	/**
+	 * Returns the quality of a packed colour
+	 * @param argb the colour packed as an ARGB int
+	 * @return a quality metric
+	 */
+	public static double getQuality(int argb) {
 
-		float saturation = hsb[1];
-		float brightness = hsb[2];
+		float saturation = saturation(argb);
+		float brightness = brightness(argb);
 		// Clean water: Low saturation + medium brightness
 		if (saturation < 0.3 && brightness > 0.4 && brightness < 0.8) {
 			return 1.0; // Best quality
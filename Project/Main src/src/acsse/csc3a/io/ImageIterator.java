@@ -1,6 +1,5 @@
 package acsse.csc3a.io;
 
-import java.awt.image.BufferedImage;
 import java.io.*;
 import java.util.Collections;
 import java.util.Iterator;
@@ -8,8 +7,6 @@ import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Random;
 
-import javax.imageio.ImageIO;
-
 import acsse.csc3a.graph.algorithms.CATEGORY_TYPE;
 import acsse.csc3a.graph.algorithms.MSTFeatures;
 import acsse.csc3a.imagegraph.AbstractImageGraphProxy;
@@ -238,39 +235,27 @@ public class ImageIterator implements Iterator<AbstractImageGraphProxy>, Closeab
 			throw new NoSuchElementException("No more images to process");
 		}
 
-		try {
-			File currentFile = files[currentIndex++];
-
-			BufferedImage image = ImageIO.read(currentFile);
+		File currentFile = files[currentIndex++];
 
-			/*
-			 * if the image cannot be read by ImageIO.read and the image has no valid
-			 * mstFeatures then it is not valid
-			 */
-			if (image == null || mstFeatures.isEmpty()
-					|| mstFeatures.get(new File(currentFile.getParent()).getName() + currentFile.getName()) == null) {
-				if (image == null)
-					System.out.println("Warning: Could not read image - " + currentFile.getName());
-				else
-					System.out.println("Warning: Image has no corrosponding mst Features - " + currentFile.getName());
+		// create the key which maps to an image graph's mst features
+		String featureKeyString = new File(currentFile.getParent()).getName() + currentFile.getName();
 
-				return next(); // Skip to next file
-			}
-
-			// create the key which maps to an image graph's mst features
-			String featureKeyString = new File(currentFile.getParent()).getName() + currentFile.getName();
+		// an image without valid mstFeatures is not valid
+		if (mstFeatures.isEmpty() || mstFeatures.get(featureKeyString) == null) {
+			System.out.println("Warning: Image has no corrosponding mst Features - " + currentFile.getName());
+			return next(); // Skip to next file
+		}
 
-			// create a proxy
-			ImageGraphProxy proxy = new ImageGraphProxy(image, currentFile, mstFeatures.get(featureKeyString));
+		/*
+		 * the image is not decoded here, the proxy reads it when its graph is built
+		 * so references that are only compared by their features are never decoded
+		 */
+		ImageGraphProxy proxy = new ImageGraphProxy(null, currentFile, mstFeatures.get(featureKeyString));
 
-			// Prepare for the next call
-			advanceToNextValid();
+		// Prepare for the next call
+		advanceToNextValid();
 
-			return proxy;
-		} catch (IOException e) {
-			close();
-			throw new RuntimeException("Error processing image file", e);
-		}
+		return proxy;
 	}
 
 	/**
@@ -3,19 +3,33 @@ package acsse.csc3a.lists;
 import java.io.Serializable;
 import java.util.*;
 
+/**
+ * An array backed list. When the array is full it grows by one of two
+ * strategies, 'A' adds 10 slots and 'B' doubles the array. Doubling is the
+ * default since it copies each element a constant number of times on average,
+ * adding 10 slots copies the whole list every 10 additions
+ *
+ * @param <T> the type of the elements
+ */
 public class ArrayList<T> implements List<T>, Iterable<T>, Serializable {
 
+    /**
+     * the largest array the list will allocate, some VMs reserve header words in
+     * an array
+     */
+    private static final int MAX_ARRAY_LENGTH = Integer.MAX_VALUE - 8;
+
     private T[] data;
     private int size;
     private int arrayLength;
     private char strategy;
 
     public ArrayList() {
-        this('A', 5);
+        this('B', 5);
     }
 
     public ArrayList(int arrayLength) {
-        this('A', arrayLength);
+        this('B', arrayLength);
     }
 
     public ArrayList(char strategy) {
@@ -24,12 +38,16 @@ public class ArrayList<T> implements List<T>, Iterable<T>, Serializable {
 
     /**
      * Constructs an arraylist which uses a specified strategy an with an initial size
-     * @param strategy the strategy the arraylist should use to grow when full
+     * @param strategy the strategy the arraylist should use to grow when full, 'A'
+     *                 or 'B', any other strategy is treated as 'B'
      * @param arrayLength the length of the initial array
+     * @throws IllegalArgumentException if the length is negative
      */
     @SuppressWarnings("unchecked")
-    public ArrayList(char strategy, int arrayLength) {
-        this.strategy = (strategy == 'A' || strategy == 'B') ? strategy : 'A';
+    public ArrayList(char strategy, int arrayLength) throws IllegalArgumentException {
+        if (arrayLength < 0)
+            throw new IllegalArgumentException("Illegal array length: " + arrayLength);
+        this.strategy = (strategy == 'A' || strategy == 'B') ? strategy : 'B';
         this.arrayLength = arrayLength;
         this.data = (T[]) new Object[arrayLength];
         this.size = 0;
@@ -39,19 +57,50 @@ public class ArrayList<T> implements List<T>, Iterable<T>, Serializable {
      * expands the array according to the provided strategy
      */
     private void expandArray() {
-        int newSize;
+        expandArray(arrayLength + 1);
+    }
+
+    /**
+     * expands the array according to the provided strategy, or to the minimum
+     * length if the strategy does not reach it
+     * @param minLength the smallest length the array must have
+     * @throws IllegalStateException if the array cannot be that long
+     */
+    private void expandArray(int minLength) throws IllegalStateException {
+        if (minLength < 0 || minLength > MAX_ARRAY_LENGTH)
+            throw new IllegalStateException("The list cannot grow beyond " + MAX_ARRAY_LENGTH + " elements");
+        long newSize;
         switch (strategy) {
             case 'A':
-                newSize = this.arrayLength + 10;
+                newSize = (long) this.arrayLength + 10;
                 break;
             case 'B':
-                newSize = this.arrayLength * 2;
-                break;
             default:
-                newSize = this.arrayLength + 10;
+                newSize = (long) this.arrayLength * 2;
+        }
+        newSize = Math.min(Math.max(newSize, minLength), MAX_ARRAY_LENGTH);
+        data = Arrays.copyOf(data, (int) newSize);
+        arrayLength = (int) newSize;
+    }
+
+    /**
+     * Makes sure the list can hold a number of elements without growing again
+     * @param minCapacity the number of elements the list must be able to hold
+     * @throws IllegalStateException if the array cannot be that long
+     */
+    public void ensureCapacity(int minCapacity) throws IllegalStateException {
+        if (minCapacity > arrayLength)
+            expandArray(minCapacity);
+    }
+
+    /**
+     * Shrinks the array to the number of elements in the list
+     */
+    public void trimToSize() {
+        if (size < arrayLength) {
+            data = Arrays.copyOf(data, size);
+            arrayLength = size;
         }
-        data = Arrays.copyOf(data, newSize);
-        arrayLength = newSize;
     }
 
     /**
@@ -183,17 +232,25 @@ public class ArrayList<T> implements List<T>, Iterable<T>, Serializable {
 
     @Override
     public boolean addAll(Collection<? extends T> c) {
-        for (T item : c) add(item);
-        return !c.isEmpty();
+        return addAll(size, c);
     }
 
+    /**
+     * Inserts every element of a collection at an index, the array grows at most
+     * once and the elements after the index are moved once
+     */
     @Override
     public boolean addAll(int index, Collection<? extends T> c) {
         checkIndex(index, size + 1);
-        for (T item : c) {
-            add(index++, item);
-        }
-        return !c.isEmpty();
+        Object[] items = c.toArray();
+        int count = items.length;
+        if (count == 0)
+            return false;
+        ensureCapacity(size + count);
+        System.arraycopy(data, index, data, index + count, size - index);
+        System.arraycopy(items, 0, data, index, count);
+        size += count;
+        return true;
     }
 
     @Override
@@ -163,6 +163,10 @@ public class LinkedPositionalList<E> implements PositionalList<E>, Serializable
 		next.setPrev(prev);
 		size--;
 		E temp = node.getElement();
+		// detach the node so validate rejects the stale position
+		node.setElement(null);
+		node.setNext(null);
+		node.setPrev(null);
 		return temp;
 	}
 
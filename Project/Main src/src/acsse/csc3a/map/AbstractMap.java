@@ -17,6 +17,17 @@ import java.util.Random;
  */
 public abstract class AbstractMap<K, V> implements Map<K, V> {
 
+	/*
+	 * pinned to the value computed before the capacity mode was added, so
+	 * precomputed feature maps can still be read
+	 */
+	private static final long serialVersionUID = 2123966754007571533L;
+
+	/**
+	 * the largest power of two capacity
+	 */
+	private static final int MAX_POWER_OF_TWO = 1 << 30;
+
 	/**
 	 * capacity - Length of the table n - Number of entries in the map
 	 */
@@ -48,6 +59,12 @@ public abstract class AbstractMap<K, V> implements Map<K, V> {
 	 */
 	private float loadFactor = 0.5f;
 
+	/**
+	 * true when the table uses power of two capacities and masking instead of
+	 * prime capacities, maps written before the mode existed read as prime
+	 */
+	private boolean powerOfTwo;
+
 	/**
 	 * Constructs the map with a default capacity
 	 */
@@ -64,6 +81,30 @@ public abstract class AbstractMap<K, V> implements Map<K, V> {
 		this(capacity, 109345121);
 	}
 
+	/**
+	 * Constructs the map with a capacity and the given capacity mode, with
+	 * {@link CAPACITY_MODE#POWER_OF_TWO} the capacity is rounded up to a power of
+	 * two
+	 * 
+	 * @param capacity capacity of the table
+	 * @param mode     how the table is sized and indexed
+	 */
+	public AbstractMap(int capacity, CAPACITY_MODE mode) {
+		// the table is only sized by the capacity, so the mode can be set after it is created
+		this(mode == CAPACITY_MODE.POWER_OF_TWO ? nextPowerOfTwo(capacity) : capacity, 109345121);
+		// the scale doubles as the seed of the mixer in power of two mode
+		this.powerOfTwo = mode == CAPACITY_MODE.POWER_OF_TWO;
+	}
+
+	/**
+	 * Returns how the table is sized and indexed
+	 * 
+	 * @return the capacity mode
+	 */
+	public CAPACITY_MODE getCapacityMode() {
+		return powerOfTwo ? CAPACITY_MODE.POWER_OF_TWO : CAPACITY_MODE.PRIME;
+	}
+
 	/**
 	 * This method changes the load factor, which affectes how large the table grows
 	 * 
@@ -140,8 +181,8 @@ public abstract class AbstractMap<K, V> implements Map<K, V> {
 	 * @param newCapacity the size of the new table
 	 */
 	protected void resize(int newCapacity) {
-		// Ensure new capacity is at least double and a prime number
-		newCapacity = nextPrime(newCapacity);
+		// Ensure new capacity is at least double and a prime number (or a power of two)
+		newCapacity = powerOfTwo ? nextPowerOfTwo(newCapacity) : nextPrime(newCapacity);
 
 		ArrayList<MapEntry<K, V>> buffer = new ArrayList<>(n);
 		for (MapEntry<K, V> e : entrySet()) {
@@ -157,6 +198,19 @@ public abstract class AbstractMap<K, V> implements Map<K, V> {
 		}
 	}
 
+	/**
+	 * Returns the smallest power of two that is at least the given number
+	 * 
+	 * @param num the input number being queried
+	 * @return a power of two, at least 2
+	 */
+	private static int nextPowerOfTwo(int num) {
+		// a doubled capacity may have overflowed
+		if (num >= MAX_POWER_OF_TWO || num < 0)
+			return MAX_POWER_OF_TWO;
+		return Math.max(2, Integer.highestOneBit(Math.max(num - 1, 1)) << 1);
+	}
+
 	/**
 	 * Returns the next prime number after a given input number
 	 * 
@@ -204,6 +258,9 @@ public abstract class AbstractMap<K, V> implements Map<K, V> {
 	 * @return the appropriate bucket position in the tabel
 	 */
 	protected int hashValue(K key) {
+		if (powerOfTwo)
+			return mix(key.hashCode() ^ (int) scale) & (capacity - 1);
+
 		int h = key.hashCode();
 		// Spread bits to avoid clustering
 		h ^= (h >>> 20) ^ (h >>> 12);
@@ -211,6 +268,34 @@ public abstract class AbstractMap<K, V> implements Map<K, V> {
 		return (int) ((Math.abs(h * scale + shift) % prime) % capacity);
 	}
 
+	/**
+	 * Scrambles a hash code so every bit of it affects the low bits, the
+	 * finalizer of MurmurHash3
+	 * 
+	 * @param h the hash code
+	 * @return the mixed hash code
+	 */
+	private static int mix(int h) {
+		h ^= h >>> 16;
+		h *= 0x85EBCA6B;
+		h ^= h >>> 13;
+		h *= 0xC2B2AE35;
+		h ^= h >>> 16;
+		return h;
+	}
+
+	/**
+	 * The bucket after the given bucket, wrapping around at the end of the table.
+	 * A comparison replaces the modulo, the result is the same in both capacity
+	 * modes
+	 * 
+	 * @param bucket the current bucket
+	 * @return the next bucket
+	 */
+	protected final int nextBucket(int bucket) {
+		return ++bucket == capacity ? 0 : bucket;
+	}
+
 	/**
 	 * This method should create an initially empty table having size equal to a
 	 * designated capacity instance variable.
@@ -1,8 +1,11 @@
 package acsse.csc3a.map;
 
-import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
 import java.util.Objects;
 import java.util.Set;
+import java.util.function.BiConsumer;
 
 import acsse.csc3a.graph.Vertex;
 import acsse.csc3a.imagegraph.Point;
@@ -15,10 +18,24 @@ import acsse.csc3a.imagegraph.Point;
  * @param <V> Edge type representing connections between vertices
  */
 public class AdjacencyMap<K, V> extends AbstractMap<K, V> {
+
+	/*
+	 * pinned to the value computed before the capacity mode was added, so
+	 * precomputed feature maps can still be read
+	 */
+	private static final long serialVersionUID = 4345026686490105536L;
+
 	private MapEntry<K, V>[] table;
 	private final MapEntry<K, V> DEFUNCT_SENTINEL = new MapEntry<>(null, null, -1);
 	private static final int MAX_PROBE_LIMIT = 32; // Prevent infinite loops
 
+	/*
+	 * the views are created once and walk the table on every iteration
+	 */
+	private transient Iterable<MapEntry<K, V>> entries;
+	private transient Iterable<K> keys;
+	private transient Iterable<V> values;
+
 	public AdjacencyMap() {
 		super();
 	}
@@ -31,6 +48,16 @@ public class AdjacencyMap<K, V> extends AbstractMap<K, V> {
 		super(capacity, prime);
 	}
 
+	/**
+	 * Constructs the map with a capacity and the given capacity mode
+	 * 
+	 * @param capacity capacity of the table
+	 * @param mode     how the table is sized and indexed
+	 */
+	public AdjacencyMap(int capacity, CAPACITY_MODE mode) {
+		super(capacity, mode);
+	}
+
 	@SuppressWarnings("unchecked")
 	@Override
 	protected void createTable() {
@@ -62,7 +89,7 @@ public class AdjacencyMap<K, V> extends AbstractMap<K, V> {
 				break;
 			}
 
-			hash = (hash + 1) % capacity;
+			hash = nextBucket(hash);
 			probe++;
 		}
 
@@ -82,6 +109,15 @@ public class AdjacencyMap<K, V> extends AbstractMap<K, V> {
 	@Override
 
 	protected V bucketPut(int h, K key, V value) throws IllegalStateException {
+		/*
+		 * the key may sit past a tombstone left by a removal, update it there instead
+		 * of inserting a duplicate into the tombstone
+		 */
+		int existingPos = findKeyIndex(h, key);
+		if (existingPos != -1) {
+			return table[existingPos].setValue(value);
+		}
+
 		int hash = h;
 		int probe = 0;
 		MapEntry<K, V> newEntry = new MapEntry<>(key, value, probe);
@@ -92,6 +128,7 @@ public class AdjacencyMap<K, V> extends AbstractMap<K, V> {
 
 			// Case 1: Empty or tombstone slot
 			if (existing == null || existing == DEFUNCT_SENTINEL) {
+				newEntry.dib = probe;
 				table[hash] = newEntry;
 				n++;
 				return oldValue;
@@ -107,22 +144,32 @@ public class AdjacencyMap<K, V> extends AbstractMap<K, V> {
 			// Case 3: Robin Hood swap
 			if (probe > existing.dib) {
 				// Swap entries and continue with displaced entry
+				newEntry.dib = probe;
 				table[hash] = newEntry;
 				newEntry = existing;
 				probe = existing.dib;
 			}
 
 			// Linear probing
-			hash = (hash + 1) % capacity;
+			hash = nextBucket(hash);
 			probe++;
 		}
 
-		// Probing limit exceeded - resize and retry
+		/*
+		 * Probing limit exceeded - resize and retry, after a swap the entry still
+		 * being carried is a displaced one, the new key is already in the table
+		 */
+		K carriedKey = newEntry.getKey();
+		V carriedValue = newEntry.getValue();
 		resize(findNewCapacity());
-		return bucketPut(hashValue(key), key, value);
+		bucketPut(hashValue(carriedKey), carriedKey, carriedValue);
+		return oldValue;
 	}
 
 	private int findNewCapacity() {
+		if (getCapacityMode() == CAPACITY_MODE.POWER_OF_TWO)
+			return capacity * 2;
+
 		// Find next prime number for better distribution
 		int newCapacity = capacity * 2;
 		while (!isPrime(newCapacity)) {
@@ -163,13 +210,13 @@ public class AdjacencyMap<K, V> extends AbstractMap<K, V> {
 		n--;
 
 		// Backward shift
-		int nextPos = (currentPos + 1) % capacity;
+		int nextPos = nextBucket(currentPos);
 		while (table[nextPos] != null && table[nextPos].dib > 0) {
 			table[currentPos] = table[nextPos];
 			table[currentPos].dib--;
 			table[nextPos] = DEFUNCT_SENTINEL;
 			currentPos = nextPos;
-			nextPos = (nextPos + 1) % capacity;
+			nextPos = nextBucket(nextPos);
 		}
 
 		return removedValue;
@@ -190,7 +237,7 @@ public class AdjacencyMap<K, V> extends AbstractMap<K, V> {
 			if (table[hash] != DEFUNCT_SENTINEL && table[hash].getKey().equals(key)) {
 				return hash;
 			}
-			hash = (hash + 1) % capacity;
+			hash = nextBucket(hash);
 			probe++;
 		}
 		return -1;
@@ -206,27 +253,149 @@ public class AdjacencyMap<K, V> extends AbstractMap<K, V> {
 		return false;
 	}
 
-	@Override
-	public Iterable<MapEntry<K, V>> entrySet() {
-		ArrayList<MapEntry<K, V>> entries = new ArrayList<>(n);
-		for (MapEntry<K, V> entry : table) {
+	/**
+	 * Passes every entry to the action, in table order, without creating an
+	 * iterator
+	 * 
+	 * @param action receives the key and value of every entry
+	 */
+	public void forEach(BiConsumer<? super K, ? super V> action) {
+		Objects.requireNonNull(action);
+		MapEntry<K, V>[] tab = table;
+		for (MapEntry<K, V> entry : tab) {
 			if (entry != null && entry != DEFUNCT_SENTINEL) {
-				entries.add(entry);
+				action.accept(entry.getKey(), entry.getValue());
 			}
 		}
+	}
+
+	@Override
+	public Iterable<MapEntry<K, V>> entrySet() {
+		if (entries == null)
+			entries = new EntryView();
 		return entries;
 	}
 
 	@Override
 	public Iterable<K> keySet() {
-		// TODO Auto-generated method stub
-		ArrayList<K> keys = new ArrayList<>(n);
-		for (MapEntry<K, V> entry : table) {
-			if (entry != null && entry != DEFUNCT_SENTINEL) {
-				keys.add(entry.getKey());
+		if (keys == null)
+			keys = new KeyView();
+		return keys;
+	}
+
+	@Override
+	public Iterable<V> values() {
+		if (values == null)
+			values = new ValueView();
+		return values;
+	}
+
+	/**
+	 * Walks the table directly, stopping on the slots that hold an entry and
+	 * skipping empty and defunct slots. The map must not be modified while it is
+	 * being iterated, an iterator is a small short lived object that the JIT can
+	 * usually remove entirely through escape analysis
+	 * 
+	 * @param <T> the type of element returned
+	 */
+	private abstract class Cursor<T> implements Iterator<T> {
+
+		/**
+		 * the table being walked, a resize replaces the table of the map
+		 */
+		private final MapEntry<K, V>[] tab = table;
+
+		/**
+		 * the slot of the next entry, or the table length when there are none left
+		 */
+		private int next = advance(0);
+
+		/**
+		 * Finds the first slot from a position that holds an entry
+		 * 
+		 * @param slot the position to start from
+		 * @return the slot, or the table length
+		 */
+		private int advance(int slot) {
+			while (slot < tab.length && (tab[slot] == null || tab[slot] == DEFUNCT_SENTINEL)) {
+				slot++;
 			}
+			return slot;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return next < tab.length;
+		}
+
+		/**
+		 * Returns the next entry of the table
+		 * 
+		 * @return the next entry
+		 * @throws NoSuchElementException        if the iteration has no more entries
+		 * @throws ConcurrentModificationException if the map was resized during the
+		 *                                         iteration
+		 */
+		protected MapEntry<K, V> nextEntry() throws NoSuchElementException, ConcurrentModificationException {
+			if (next >= tab.length)
+				throw new NoSuchElementException();
+			if (tab != table)
+				throw new ConcurrentModificationException();
+			MapEntry<K, V> entry = tab[next];
+			next = advance(next + 1);
+			return entry;
+		}
+	}
+
+	private final class EntryCursor extends Cursor<MapEntry<K, V>> {
+		@Override
+		public MapEntry<K, V> next() {
+			return nextEntry();
+		}
+	}
+
+	private final class KeyCursor extends Cursor<K> {
+		@Override
+		public K next() {
+			return nextEntry().getKey();
+		}
+	}
+
+	private final class ValueCursor extends Cursor<V> {
+		@Override
+		public V next() {
+			return nextEntry().getValue();
+		}
+	}
+
+	/**
+	 * Live view of the entries, the map is not copied
+	 */
+	private final class EntryView implements Iterable<MapEntry<K, V>> {
+		@Override
+		public Iterator<MapEntry<K, V>> iterator() {
+			return new EntryCursor();
+		}
+	}
+
+	/**
+	 * Live view of the keys, the map is not copied
+	 */
+	private final class KeyView implements Iterable<K> {
+		@Override
+		public Iterator<K> iterator() {
+			return new KeyCursor();
+		}
+	}
+
+	/**
+	 * Live view of the values, the map is not copied
+	 */
+	private final class ValueView implements Iterable<V> {
+		@Override
+		public Iterator<V> iterator() {
+			return new ValueCursor();
 		}
-		return keys;
 	}
 
 	@Override
@@ -0,0 +1,21 @@
+package acsse.csc3a.map;
+
+/**
+ * Specifies how an {@link AbstractMap} sizes its table and turns a hash code
+ * into a bucket
+ */
+public enum CAPACITY_MODE {
+	/**
+	 * Prime capacities, the hash code is scaled and shifted modulo a large prime
+	 * and then reduced modulo the capacity. Tolerates poor hash codes at the cost
+	 * of two integer divisions per hash and a prime search per resize
+	 */
+	PRIME,
+	/**
+	 * Power of two capacities, the hash code is scrambled by a bit mixer and the
+	 * bucket is taken with a mask, no division is needed. The mixer spreads every
+	 * bit of the hash code over the bucket index, so poor hash codes such as the
+	 * ones of {@link acsse.csc3a.imagegraph.Point} still spread over the table
+	 */
+	POWER_OF_TWO
+}
@@ -0,0 +1,48 @@
+package acsse.csc3a.map;
+
+/**
+ * Base class for read only map views that are backed by another structure
+ * instead of a hash table, such as an index computed from the key. Views only
+ * need to answer size, get, keySet and values, every modification is rejected
+ *
+ * @param <K> the key type
+ * @param <V> the value type
+ */
+public abstract class ReadOnlyMap<K, V> implements Map<K, V> {
+
+	private static final long serialVersionUID = 1L;
+
+	@Override
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	/**
+	 * The view is read only
+	 * @throws UnsupportedOperationException always
+	 */
+	@Override
+	public V put(K key, V value) throws UnsupportedOperationException {
+		throw new UnsupportedOperationException("This map is read only");
+	}
+
+	/**
+	 * The view is read only
+	 * @throws UnsupportedOperationException always
+	 */
+	@Override
+	public V remove(K key) throws UnsupportedOperationException {
+		throw new UnsupportedOperationException("This map is read only");
+	}
+
+	/**
+	 * Entries only exist inside an {@link AbstractMap}, iterate over
+	 * {@link #keySet()} or {@link #values()} instead
+	 * @throws UnsupportedOperationException always
+	 */
+	@Override
+	public Iterable<AbstractMap<K, V>.MapEntry<K, V>> entrySet() throws UnsupportedOperationException {
+		throw new UnsupportedOperationException("This map has no entries, use keySet() or values()");
+	}
+
+}
@@ -0,0 +1,196 @@
+package acsse.csc3a.priorityQueue;
+
+import java.util.Arrays;
+
+/**
+ * An indexed priority queue for keys from a bounded range, such as colour
+ * difference weights. The range [0, maxKey] is cut into buckets of width
+ * 1 / resolution and every handle sits in the doubly linked list of its
+ * bucket, so insert and decreaseKey are constant time and removeMin only has
+ * to move a cursor to the first non empty bucket.
+ *
+ * The queue is only ordered up to the bucket width: removeMin returns a handle
+ * from the lowest non empty bucket, which may be up to 1 / resolution larger
+ * than the true minimum. Keys below 0 share the first bucket and keys above
+ * maxKey (for example "infinite" starting distances) share an overflow bucket
+ * and are not ordered among themselves.
+ *
+ * Keys may decrease below the cursor (the queue is not required to be
+ * monotone), in which case the cursor is moved back to the new bucket
+ */
+public class BucketQueue implements IndexedPriorityQueue {
+
+	private final float maxKey;
+	private final float resolution;
+
+	/**
+	 * index of the overflow bucket, the last bucket
+	 */
+	private final int overflow;
+
+	/**
+	 * the first handle of every bucket, -1 when the bucket is empty
+	 */
+	private final int[] heads;
+
+	/**
+	 * per handle, the neighbours in its bucket list and the bucket it is in (-1
+	 * when it is not in the queue)
+	 */
+	private final int[] next, previous, buckets;
+
+	private final float[] keys;
+
+	private int size = 0;
+
+	/**
+	 * the number of handles that are not in the overflow bucket
+	 */
+	private int bucketed = 0;
+
+	/**
+	 * no bucket below the cursor holds a handle
+	 */
+	private int cursor = 0;
+
+	/**
+	 * Creates an empty queue for the handles 0 to capacity - 1
+	 * @param capacity   the number of handles
+	 * @param maxKey     the largest key that is ordered, larger keys go to the
+	 *                   overflow bucket
+	 * @param resolution the number of buckets per unit of key
+	 * @throws IllegalArgumentException if maxKey is negative, the resolution is
+	 *                                  not positive or there would be too many
+	 *                                  buckets
+	 */
+	public BucketQueue(int capacity, float maxKey, float resolution) throws IllegalArgumentException {
+		if (!(maxKey >= 0) || !(resolution > 0) || (double) maxKey * resolution >= Integer.MAX_VALUE - 8)
+			throw new IllegalArgumentException("Invalid key range: " + maxKey + " with resolution " + resolution);
+
+		this.maxKey = maxKey;
+		this.resolution = resolution;
+		this.overflow = (int) (maxKey * resolution) + 1;
+
+		heads = new int[overflow + 1];
+		next = new int[capacity];
+		previous = new int[capacity];
+		buckets = new int[capacity];
+		keys = new float[capacity];
+		Arrays.fill(heads, -1);
+		Arrays.fill(buckets, -1);
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	@Override
+	public boolean contains(int handle) {
+		return buckets[handle] >= 0;
+	}
+
+	@Override
+	public float key(int handle) {
+		return keys[handle];
+	}
+
+	@Override
+	public void insert(int handle, float key) throws IllegalArgumentException {
+		if (buckets[handle] >= 0)
+			throw new IllegalArgumentException("Handle " + handle + " is already in the queue");
+		keys[handle] = key;
+		link(handle, bucketOf(key));
+		size++;
+	}
+
+	@Override
+	public void decreaseKey(int handle, float key) throws IllegalArgumentException {
+		if (buckets[handle] < 0)
+			throw new IllegalArgumentException("Handle " + handle + " is not in the queue");
+		if (key > keys[handle])
+			throw new IllegalArgumentException("The new key is larger than the current key");
+		keys[handle] = key;
+
+		int bucket = bucketOf(key);
+		if (bucket != buckets[handle]) {
+			unlink(handle);
+			link(handle, bucket);
+		}
+	}
+
+	@Override
+	public int removeMin() {
+		if (size == 0)
+			return -1;
+
+		// only overflow keys are left, skip the empty buckets in one step
+		if (bucketed == 0)
+			cursor = overflow;
+
+		while (heads[cursor] < 0)
+			cursor++;
+
+		int min = heads[cursor];
+		unlink(min);
+		size--;
+		return min;
+	}
+
+	/**
+	 * Finds the bucket a key belongs in
+	 * @param key the key being queried
+	 * @return the index of the bucket
+	 */
+	private int bucketOf(float key) {
+		if (key > maxKey)
+			return overflow;
+		if (!(key > 0))
+			return 0;
+		return (int) (key * resolution);
+	}
+
+	/**
+	 * Adds a handle to the front of a bucket's list
+	 * @param handle the handle being added
+	 * @param bucket the bucket
+	 */
+	private void link(int handle, int bucket) {
+		int head = heads[bucket];
+		next[handle] = head;
+		previous[handle] = -1;
+		if (head >= 0)
+			previous[head] = handle;
+		heads[bucket] = handle;
+		buckets[handle] = bucket;
+
+		if (bucket != overflow)
+			bucketed++;
+		if (bucket < cursor)
+			cursor = bucket;
+	}
+
+	/**
+	 * Removes a handle from its bucket's list
+	 * @param handle the handle being removed
+	 */
+	private void unlink(int handle) {
+		int bucket = buckets[handle];
+		if (previous[handle] >= 0)
+			next[previous[handle]] = next[handle];
+		else
+			heads[bucket] = next[handle];
+		if (next[handle] >= 0)
+			previous[next[handle]] = previous[handle];
+		buckets[handle] = -1;
+
+		if (bucket != overflow)
+			bucketed--;
+	}
+
+}
@@ -0,0 +1,151 @@
+package acsse.csc3a.priorityQueue;
+
+import java.util.Arrays;
+
+/**
+ * A binary min heap of int handles ordered by primitive float keys. Handles
+ * are the numbers 0 to capacity - 1 (typically vertex indices) and the heap
+ * keeps the position of every handle, so the key of a handle already in the
+ * heap can be lowered in place with {@link #decreaseKey(int, float)} instead
+ * of inserting a duplicate entry. Nothing is boxed or allocated after
+ * construction
+ */
+public class IndexedMinHeap implements IndexedPriorityQueue {
+
+	/**
+	 * the handles in heap order
+	 */
+	private final int[] heap;
+
+	/**
+	 * the position of each handle in the heap, -1 when it is not in the heap
+	 */
+	private final int[] positions;
+
+	/**
+	 * the key of each handle
+	 */
+	private final float[] keys;
+
+	private int size = 0;
+
+	/**
+	 * Creates an empty heap for the handles 0 to capacity - 1
+	 * @param capacity the number of handles
+	 */
+	public IndexedMinHeap(int capacity) {
+		heap = new int[capacity];
+		positions = new int[capacity];
+		keys = new float[capacity];
+		Arrays.fill(positions, -1);
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	@Override
+	public boolean contains(int handle) {
+		return positions[handle] >= 0;
+	}
+
+	@Override
+	public float key(int handle) {
+		return keys[handle];
+	}
+
+	@Override
+	public void insert(int handle, float key) throws IllegalArgumentException {
+		if (positions[handle] >= 0)
+			throw new IllegalArgumentException("Handle " + handle + " is already in the heap");
+		keys[handle] = key;
+		heap[size] = handle;
+		positions[handle] = size;
+		upheap(size++);
+	}
+
+	@Override
+	public void decreaseKey(int handle, float key) throws IllegalArgumentException {
+		if (positions[handle] < 0)
+			throw new IllegalArgumentException("Handle " + handle + " is not in the heap");
+		if (key > keys[handle])
+			throw new IllegalArgumentException("The new key is larger than the current key");
+		keys[handle] = key;
+		upheap(positions[handle]);
+	}
+
+	/**
+	 * Gets the handle with the smallest key without removing it
+	 * @return the handle, or -1 if the heap is empty
+	 */
+	public int min() {
+		return size == 0 ? -1 : heap[0];
+	}
+
+	@Override
+	public int removeMin() {
+		if (size == 0)
+			return -1;
+		int min = heap[0];
+		size--;
+		if (size > 0) {
+			heap[0] = heap[size];
+			positions[heap[0]] = 0;
+			downheap(0);
+		}
+		positions[min] = -1;
+		return min;
+	}
+
+	/**
+	 * Moves the handle at position j up until its parent has a smaller key
+	 * @param j the position of the handle
+	 */
+	private void upheap(int j) {
+		final int handle = heap[j];
+		final float key = keys[handle];
+		while (j > 0) {
+			int parent = (j - 1) >>> 1;
+			int parentHandle = heap[parent];
+			if (key >= keys[parentHandle])
+				break;
+			heap[j] = parentHandle;
+			positions[parentHandle] = j;
+			j = parent;
+		}
+		heap[j] = handle;
+		positions[handle] = j;
+	}
+
+	/**
+	 * Moves the handle at position j down until its children have larger keys
+	 * @param j the position of the handle
+	 */
+	private void downheap(int j) {
+		final int handle = heap[j];
+		final float key = keys[handle];
+		while (true) {
+			int child = 2 * j + 1;
+			if (child >= size)
+				break;
+			// pick the smaller child
+			if (child + 1 < size && keys[heap[child + 1]] < keys[heap[child]])
+				child++;
+			int childHandle = heap[child];
+			if (keys[childHandle] >= key)
+				break;
+			heap[j] = childHandle;
+			positions[childHandle] = j;
+			j = child;
+		}
+		heap[j] = handle;
+		positions[handle] = j;
+	}
+
+}
@@ -0,0 +1,58 @@
+package acsse.csc3a.priorityQueue;
+
+/**
+ * A priority queue of int handles, the numbers 0 to capacity - 1 (typically
+ * vertex indices), ordered by primitive float keys. Every handle is in the
+ * queue at most once and its key can be lowered in place
+ */
+public interface IndexedPriorityQueue {
+
+	/**
+	 * Returns the number of handles in the queue
+	 * @return the size
+	 */
+	int size();
+
+	/**
+	 * Determines if the queue is empty
+	 * @return true if no handle is in the queue
+	 */
+	boolean isEmpty();
+
+	/**
+	 * Checks if a handle is in the queue
+	 * @param handle the handle being queried
+	 * @return true if the handle has been inserted and not yet removed
+	 */
+	boolean contains(int handle);
+
+	/**
+	 * Gets the key of a handle
+	 * @param handle the handle being queried
+	 * @return the last key the handle was given
+	 */
+	float key(int handle);
+
+	/**
+	 * Inserts a handle with the given key
+	 * @param handle the handle being inserted
+	 * @param key    the key of the handle
+	 * @throws IllegalArgumentException if the handle is already in the queue
+	 */
+	void insert(int handle, float key) throws IllegalArgumentException;
+
+	/**
+	 * Lowers the key of a handle in the queue
+	 * @param handle the handle being updated
+	 * @param key    the new key, no larger than the current key
+	 * @throws IllegalArgumentException if the handle is not in the queue or the
+	 *                                  key is larger than the current key
+	 */
+	void decreaseKey(int handle, float key) throws IllegalArgumentException;
+
+	/**
+	 * Removes the handle with the smallest key
+	 * @return the handle, or -1 if the queue is empty
+	 */
+	int removeMin();
+}
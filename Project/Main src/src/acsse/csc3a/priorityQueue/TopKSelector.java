@@ -0,0 +1,246 @@
+package acsse.csc3a.priorityQueue;
+
+import java.util.Comparator;
+import java.util.List;
+
+import acsse.csc3a.lists.ArrayList;
+
+/**
+ * Keeps the K smallest of a stream of candidates in a bounded binary max heap.
+ * The largest candidate kept sits at the root, a new candidate only has to be
+ * compared with it and replaces it when smaller, so offering a candidate costs
+ * O(log K) and the selector holds O(K) candidates however many are offered.
+ *
+ * Once K candidates were kept the root is the K-th smallest so far, exposed by
+ * {@link #threshold()}, and no candidate that is not smaller than it can make
+ * it into the result. Candidates that compare equal are ordered by the order
+ * they were offered in, so the result is the same as stably sorting every
+ * candidate and taking the first K. The selector is not thread safe, callers
+ * offering from several threads have to synchronize on it
+ *
+ * @param <T> the type of the candidates
+ */
+public class TopKSelector<T> {
+
+	private final int k;
+	private final Comparator<? super T> comp;
+
+	/**
+	 * the candidates kept in max heap order, and the sequence number each was
+	 * offered with
+	 */
+	private final Object[] heap;
+	private final long[] sequence;
+
+	private int size = 0;
+	private long offered = 0;
+
+	/**
+	 * Creates a selector that orders the candidates by their natural ordering
+	 *
+	 * @param k the number of candidates kept
+	 * @throws IllegalArgumentException if k is less than 1
+	 */
+	@SuppressWarnings("unchecked")
+	public TopKSelector(int k) throws IllegalArgumentException {
+		this(k, (a, b) -> ((Comparable<? super T>) a).compareTo(b));
+	}
+
+	/**
+	 * Creates a selector that orders the candidates with a comparator
+	 *
+	 * @param k    the number of candidates kept
+	 * @param comp the order of the candidates, the smallest are kept
+	 * @throws IllegalArgumentException if k is less than 1
+	 */
+	public TopKSelector(int k, Comparator<? super T> comp) throws IllegalArgumentException {
+		if (k < 1)
+			throw new IllegalArgumentException("Invalid K: " + k);
+		this.k = k;
+		this.comp = comp;
+		this.heap = new Object[k];
+		this.sequence = new long[k];
+	}
+
+	/**
+	 * Gets the number of candidates kept
+	 *
+	 * @return the number of candidates, at most K
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Determines if K candidates are kept, from then on the threshold applies
+	 *
+	 * @return true once K candidates were kept
+	 */
+	public boolean isFull() {
+		return size == k;
+	}
+
+	/**
+	 * Gets the K-th smallest candidate so far, a candidate has to be smaller to be
+	 * kept
+	 *
+	 * @return the largest candidate kept, or null while fewer than K are kept
+	 */
+	@SuppressWarnings("unchecked")
+	public T threshold() {
+		return size == k ? (T) heap[0] : null;
+	}
+
+	/**
+	 * Determines if a candidate would be kept if it were offered now
+	 *
+	 * @param candidate the candidate being queried
+	 * @return true if fewer than K candidates are kept or the candidate is smaller
+	 *         than the threshold
+	 */
+	@SuppressWarnings("unchecked")
+	public boolean accepts(T candidate) {
+		return size < k || comp.compare(candidate, (T) heap[0]) < 0;
+	}
+
+	/**
+	 * Offers a candidate, it is kept if it is among the K smallest so far
+	 *
+	 * @param candidate the candidate being offered
+	 * @return true if the candidate was kept
+	 */
+	public boolean offer(T candidate) {
+		return offer(candidate, offered++);
+	}
+
+	/**
+	 * Offers a candidate with the position it has in the stream, for candidates
+	 * that arrive out of order, for example from several threads. Candidates that
+	 * compare equal are ordered by their position, so the result is the same as
+	 * offering them in order. Positions should not be mixed with
+	 * {@link #offer(Object)}
+	 *
+	 * @param candidate the candidate being offered
+	 * @param position  the position of the candidate in the stream
+	 * @return true if the candidate was kept
+	 */
+	public boolean offer(T candidate, long position) {
+		if (size < k) {
+			heap[size] = candidate;
+			sequence[size] = position;
+			upheap(size++);
+			return true;
+		}
+
+		if (compare(candidate, position, heap[0], sequence[0]) >= 0)
+			return false;
+		heap[0] = candidate;
+		sequence[0] = position;
+		downheap(0);
+		return true;
+	}
+
+	/**
+	 * Gets the candidates kept, smallest first
+	 *
+	 * @return a new list of at most K candidates
+	 */
+	@SuppressWarnings("unchecked")
+	public List<T> toSortedList() {
+		Object[] sorted = new Object[size];
+		long[] order = new long[size];
+
+		// insertion sort, there are at most K candidates
+		for (int i = 0; i < size; i++) {
+			int j = i;
+			while (j > 0 && compare(heap[i], sequence[i], sorted[j - 1], order[j - 1]) < 0) {
+				sorted[j] = sorted[j - 1];
+				order[j] = order[j - 1];
+				j--;
+			}
+			sorted[j] = heap[i];
+			order[j] = sequence[i];
+		}
+
+		List<T> list = new ArrayList<>(size);
+		for (Object candidate : sorted) {
+			list.add((T) candidate);
+		}
+		return list;
+	}
+
+	/**
+	 * Removes every candidate, the selector can be reused for another query
+	 */
+	public void clear() {
+		for (int i = 0; i < size; i++) {
+			heap[i] = null;
+		}
+		size = 0;
+		offered = 0;
+	}
+
+	/**
+	 * Compares two candidates, breaking ties by the order they were offered in
+	 */
+	@SuppressWarnings("unchecked")
+	private int compare(Object a, long orderA, Object b, long orderB) {
+		int c = comp.compare((T) a, (T) b);
+		return c != 0 ? c : Long.compare(orderA, orderB);
+	}
+
+	/**
+	 * Compares the candidates at two positions of the heap
+	 */
+	private int compareAt(int i, int j) {
+		return compare(heap[i], sequence[i], heap[j], sequence[j]);
+	}
+
+	/**
+	 * Moves the candidate at a position towards the root while it is larger than
+	 * its parent
+	 *
+	 * @param j the position of the candidate
+	 */
+	private void upheap(int j) {
+		while (j > 0) {
+			int p = (j - 1) / 2;
+			if (compareAt(j, p) <= 0)
+				break;
+			swap(j, p);
+			j = p;
+		}
+	}
+
+	/**
+	 * Moves the candidate at a position away from the root while it is smaller
+	 * than its larger child
+	 *
+	 * @param j the position of the candidate
+	 */
+	private void downheap(int j) {
+		while (2 * j + 1 < size) {
+			int largest = 2 * j + 1;
+			int right = largest + 1;
+			if (right < size && compareAt(right, largest) > 0)
+				largest = right;
+			if (compareAt(largest, j) <= 0)
+				break;
+			swap(j, largest);
+			j = largest;
+		}
+	}
+
+	/**
+	 * Exchanges the candidates at two positions of the heap
+	 */
+	private void swap(int i, int j) {
+		Object temp = heap[i];
+		heap[i] = heap[j];
+		heap[j] = temp;
+		long order = sequence[i];
+		sequence[i] = sequence[j];
+		sequence[j] = order;
+	}
+
+}